@@ -23,7 +23,7 @@ public class Game implements Runnable {
 
     public Game() {
         window = new Window(1280, 720, "Glowing Memory - Voxel Sandbox");
-        renderer = new Renderer();
+        renderer = new Renderer(window);
         world = new World(renderer);
         Camera camera = new Camera();
         player = new Player(camera, world);
@@ -77,7 +77,7 @@ public class Game implements Runnable {
 
     private void shutdown() {
         Log.info("Shutting down game");
-        world.saveAll();
+        world.shutdown();
         renderer.destroy();
         window.destroy();
     }
@@ -0,0 +1,111 @@
+package com.glowingmemory.bench;
+
+import com.glowingmemory.world.Chunk;
+import com.glowingmemory.world.ChunkMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Chunk lookups through the old {@code HashMap<Long, Chunk>} against {@link ChunkMap}, replaying the block
+ * access patterns of player collision (a few blocks around a slowly moving box) and of raycasts (long
+ * block-by-block walks in random directions). Run with {@code make bench-chunkmap}.
+ */
+public class ChunkMapBench {
+    private static final int RADIUS = 16;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final int STEPS = 200_000;
+    private static final int RAYS = 20_000;
+    private static final int RAY_LENGTH = 64;
+
+    private interface Lookup {
+        Chunk get(int x, int z);
+    }
+
+    private interface Pattern {
+        long run(Lookup lookup);
+    }
+
+    public static void main(String[] args) {
+        Map<Long, Chunk> hashMap = new HashMap<>();
+        ChunkMap chunkMap = new ChunkMap();
+        for (int x = -RADIUS; x <= RADIUS; x++) {
+            for (int z = -RADIUS; z <= RADIUS; z++) {
+                Chunk chunk = new Chunk(x, z);
+                hashMap.put(Chunk.key(x, z), chunk);
+                chunkMap.putIfAbsent(chunk);
+            }
+        }
+        Lookup boxed = (x, z) -> hashMap.get(Chunk.key(x, z));
+        Lookup open = chunkMap.cursor()::get;
+
+        run("collision", ChunkMapBench::collision, boxed, open);
+        run("raycast", ChunkMapBench::raycast, boxed, open);
+    }
+
+    private static void run(String label, Pattern pattern, Lookup boxed, Lookup open) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            pattern.run(boxed);
+            pattern.run(open);
+        }
+        long[] nanos = new long[2];
+        long lookups = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            lookups = pattern.run(boxed);
+            long middle = System.nanoTime();
+            pattern.run(open);
+            nanos[0] += middle - start;
+            nanos[1] += System.nanoTime() - middle;
+        }
+        System.out.printf("%-10s %9d lookups  HashMap %6.2f ns  ChunkMap %6.2f ns  per lookup%n",
+                label, lookups, nanos[0] / (double) ROUNDS / lookups, nanos[1] / (double) ROUNDS / lookups);
+    }
+
+    /** A 0.6 x 1.8 x 0.6 box wandering through the world, testing every block it overlaps at each step. */
+    private static long collision(Lookup lookup) {
+        Random random = new Random(7);
+        double x = 0.5;
+        double z = 0.5;
+        long lookups = 0;
+        long found = 0;
+        for (int step = 0; step < STEPS; step++) {
+            x += (random.nextDouble() - 0.5) * 0.4;
+            z += (random.nextDouble() - 0.5) * 0.4;
+            x = Math.max(-RADIUS * Chunk.SIZE + 2, Math.min(RADIUS * Chunk.SIZE - 2, x));
+            z = Math.max(-RADIUS * Chunk.SIZE + 2, Math.min(RADIUS * Chunk.SIZE - 2, z));
+            for (int bx = (int) Math.floor(x - 0.3); bx <= (int) Math.floor(x + 0.3); bx++) {
+                for (int by = 0; by < 3; by++) {
+                    for (int bz = (int) Math.floor(z - 0.3); bz <= (int) Math.floor(z + 0.3); bz++) {
+                        if (lookup.get(Math.floorDiv(bx, Chunk.SIZE), Math.floorDiv(bz, Chunk.SIZE)) != null) found++;
+                        lookups++;
+                    }
+                }
+            }
+        }
+        return found == lookups ? lookups : -1;
+    }
+
+    /** Rays from random points near the center, stepping one block at a time along the dominant axis. */
+    private static long raycast(Lookup lookup) {
+        Random random = new Random(11);
+        long lookups = 0;
+        long found = 0;
+        for (int ray = 0; ray < RAYS; ray++) {
+            double x = (random.nextDouble() - 0.5) * 64;
+            double z = (random.nextDouble() - 0.5) * 64;
+            double angle = random.nextDouble() * Math.PI * 2;
+            double dx = Math.cos(angle);
+            double dz = Math.sin(angle);
+            for (int step = 0; step < RAY_LENGTH; step++) {
+                int bx = (int) Math.floor(x + dx * step);
+                int bz = (int) Math.floor(z + dz * step);
+                if (lookup.get(Math.floorDiv(bx, Chunk.SIZE), Math.floorDiv(bz, Chunk.SIZE)) != null) found++;
+                lookups++;
+            }
+        }
+        return found == lookups ? lookups : -1;
+    }
+}
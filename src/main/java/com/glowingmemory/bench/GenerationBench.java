@@ -0,0 +1,99 @@
+package com.glowingmemory.bench;
+
+import com.glowingmemory.world.Chunk;
+import com.glowingmemory.world.TerrainGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates a grid of chunks serially and on a thread pool, checks both against a golden hash and reports
+ * throughput. Exits non-zero if the output depends on scheduling or drifts from the golden value, which
+ * matters because unedited chunks are regenerated instead of saved. Run with {@code make bench-generation}.
+ */
+public class GenerationBench {
+    private static final long SEED = 42L;
+    private static final int RADIUS = 12;
+    private static final long GOLDEN_HASH = 0xea95f9fd881cb131L;
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        TerrainGenerator generator = new TerrainGenerator(SEED);
+        // At least four threads so chunks interleave even on small machines.
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            long serial = 0;
+            long parallel = 0;
+            for (int round = 0; round < 3; round++) {
+                serial = run("serial", () -> generateSerial(generator));
+                parallel = run("parallel x" + threads, () -> generateParallel(generator, pool));
+            }
+            System.out.printf("golden  %016x%n", GOLDEN_HASH);
+            if (serial != parallel || serial != GOLDEN_HASH) {
+                System.out.println("MISMATCH");
+                System.exit(1);
+            }
+            System.out.println("OK");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private interface Pass {
+        Chunk[] run() throws InterruptedException, ExecutionException;
+    }
+
+    private static long run(String label, Pass pass) throws InterruptedException, ExecutionException {
+        long start = System.nanoTime();
+        Chunk[] chunks = pass.run();
+        double millis = (System.nanoTime() - start) / 1e6;
+        long hash = hash(chunks);
+        System.out.printf("%-12s %5d chunks  %8.2f ms  %8.0f chunks/s  hash %016x%n",
+                label, chunks.length, millis, chunks.length / (millis / 1000.0), hash);
+        return hash;
+    }
+
+    private static Chunk[] generateSerial(TerrainGenerator generator) {
+        Chunk[] chunks = new Chunk[(2 * RADIUS) * (2 * RADIUS)];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = generate(generator, i);
+        }
+        return chunks;
+    }
+
+    private static Chunk[] generateParallel(TerrainGenerator generator, ExecutorService pool)
+            throws InterruptedException, ExecutionException {
+        Chunk[] chunks = new Chunk[(2 * RADIUS) * (2 * RADIUS)];
+        List<Future<Chunk>> futures = new ArrayList<>(chunks.length);
+        for (int i = 0; i < chunks.length; i++) {
+            int index = i;
+            futures.add(pool.submit(() -> generate(generator, index)));
+        }
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = futures.get(i).get();
+        }
+        return chunks;
+    }
+
+    private static Chunk generate(TerrainGenerator generator, int index) {
+        Chunk chunk = new Chunk(index % (2 * RADIUS) - RADIUS, index / (2 * RADIUS) - RADIUS);
+        generator.generate(chunk);
+        return chunk;
+    }
+
+    private static long hash(Chunk[] chunks) {
+        byte[] ids = new byte[Chunk.VOLUME];
+        long hash = 1125899906842597L;
+        for (Chunk chunk : chunks) {
+            chunk.copyBlockIds(ids);
+            for (byte id : ids) {
+                hash = 31 * hash + id;
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,163 @@
+package com.glowingmemory.bench;
+
+import com.glowingmemory.world.Block;
+import com.glowingmemory.world.Chunk;
+import com.glowingmemory.world.TerrainGenerator;
+import com.glowingmemory.world.light.LightEngine;
+import com.glowingmemory.world.light.LightUpdater;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Headless cost of lighting: a whole chunk lit from scratch, stitching it to its neighbors, and the
+ * incremental update after a single block edit, in total and as the main thread's share when the update goes
+ * through a {@link LightUpdater}. The edited world is finally compared with one lit from scratch, which must
+ * match exactly. Run with {@code make bench-light}.
+ */
+public class LightBench {
+    private static final int RADIUS = 4;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final int EDITS = 2000;
+    private static final Block[] PLACED = {Block.LAMP, Block.STONE, Block.AIR};
+
+    public static void main(String[] args) {
+        TerrainGenerator generator = new TerrainGenerator(42L);
+        Map<Long, Chunk> terrain = new HashMap<>();
+        for (int x = -RADIUS; x <= RADIUS; x++) {
+            for (int z = -RADIUS; z <= RADIUS; z++) {
+                Chunk chunk = new Chunk(x, z);
+                generator.generate(chunk);
+                terrain.put(Chunk.key(x, z), chunk);
+            }
+        }
+        int count = terrain.size();
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            lightWorld(terrain);
+        }
+        long chunkNanos = 0;
+        long stitchNanos = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long[] nanos = lightWorld(terrain);
+            chunkNanos += nanos[0];
+            stitchNanos += nanos[1];
+        }
+        report("chunk", count * ROUNDS, chunkNanos);
+        report("stitch", count * ROUNDS, stitchNanos);
+
+        LightEngine engine = new LightEngine((x, z) -> terrain.get(Chunk.key(x, z)), (chunk, y) -> { });
+        Random random = new Random(1);
+        long[] editNanos = new long[PLACED.length];
+        int[] edits = new int[PLACED.length];
+        for (int i = 0; i < EDITS; i++) {
+            int kind = i % PLACED.length;
+            int[] edit = edit(terrain, random, kind);
+            if (edit == null) continue;
+            long start = System.nanoTime();
+            engine.blockChanged(edit[0], edit[1], edit[2]);
+            editNanos[kind] += System.nanoTime() - start;
+            edits[kind]++;
+        }
+        for (int kind = 0; kind < PLACED.length; kind++) {
+            System.out.printf("edit %-6s %5d updates  %8.1f us/update%n",
+                    PLACED[kind].name().toLowerCase(), edits[kind], editNanos[kind] / 1e3 / edits[kind]);
+        }
+
+        // The same edits as the game makes them: the main thread only copies the chunks around each edit and
+        // copies the light back, the engine's share runs in between, here on the same thread.
+        long[] workerNanos = new long[1];
+        LightUpdater updater = new LightUpdater((x, z) -> terrain.get(Chunk.key(x, z)), (chunk, y) -> { },
+                (task, done) -> {
+                    long start = System.nanoTime();
+                    task.run();
+                    workerNanos[0] += System.nanoTime() - start;
+                    done.run();
+                });
+        long[] mainNanos = new long[PLACED.length];
+        Arrays.fill(edits, 0);
+        for (int i = 0; i < EDITS; i++) {
+            int kind = i % PLACED.length;
+            int[] edit = edit(terrain, random, kind);
+            if (edit == null) continue;
+            long start = System.nanoTime();
+            long worker = workerNanos[0];
+            updater.blockChanged(edit[0], edit[1], edit[2], edit[3], PLACED[kind].ordinal());
+            updater.update();
+            mainNanos[kind] += System.nanoTime() - start - (workerNanos[0] - worker);
+            edits[kind]++;
+        }
+        for (int kind = 0; kind < PLACED.length; kind++) {
+            System.out.printf("main %-6s %5d updates  %8.1f us/update%n",
+                    PLACED[kind].name().toLowerCase(), edits[kind], mainNanos[kind] / 1e3 / edits[kind]);
+        }
+
+        Map<Long, Chunk> reference = new HashMap<>();
+        byte[] ids = new byte[Chunk.VOLUME];
+        for (Chunk chunk : terrain.values()) {
+            Chunk copy = new Chunk(chunk.getChunkX(), chunk.getChunkZ());
+            chunk.copyBlockIds(ids);
+            copy.setBlockIds(ids);
+            reference.put(Chunk.key(copy.getChunkX(), copy.getChunkZ()), copy);
+        }
+        lightWorld(reference);
+        int mismatches = 0;
+        for (Chunk chunk : terrain.values()) {
+            Chunk copy = reference.get(Chunk.key(chunk.getChunkX(), chunk.getChunkZ()));
+            mismatches += mismatches(chunk.getSkyLightArray(), copy.getSkyLightArray());
+            mismatches += mismatches(chunk.getBlockLightArray(), copy.getBlockLightArray());
+        }
+        System.out.println(mismatches == 0 ? "incremental light matches a full relight"
+                : "MISMATCH: " + mismatches + " light bytes differ from a full relight");
+        if (mismatches != 0) System.exit(1);
+    }
+
+    /**
+     * Places a random block of kind {@code kind} into the inner chunks and returns its x, y, z and previous
+     * id, or null if it would leave the world.
+     */
+    private static int[] edit(Map<Long, Chunk> terrain, Random random, int kind) {
+        int span = (2 * RADIUS - 1) * Chunk.SIZE;
+        int x = random.nextInt(span) - (RADIUS - 1) * Chunk.SIZE;
+        int z = random.nextInt(span) - (RADIUS - 1) * Chunk.SIZE;
+        Chunk chunk = terrain.get(Chunk.key(x >> 4, z >> 4));
+        // Lamps and stone go on the surface, air digs into the ground below it.
+        int y = chunk.getHeight(x & 15, z & 15) - (PLACED[kind] == Block.AIR ? 1 + random.nextInt(4) : 0);
+        if (y < 0 || y >= Chunk.HEIGHT) return null;
+        int previous = chunk.getBlockId(x & 15, y, z & 15);
+        chunk.setBlock(x & 15, y, z & 15, PLACED[kind]);
+        return new int[]{x, y, z, previous};
+    }
+
+    /** Lights every chunk on its own, then stitches them together; returns the nanoseconds of both phases. */
+    private static long[] lightWorld(Map<Long, Chunk> terrain) {
+        Map<Long, Chunk> loaded = new HashMap<>();
+        LightEngine engine = new LightEngine((x, z) -> loaded.get(Chunk.key(x, z)), (chunk, y) -> { });
+        long start = System.nanoTime();
+        for (Chunk chunk : terrain.values()) {
+            LightEngine.lightChunk(chunk);
+        }
+        long lit = System.nanoTime();
+        for (Chunk chunk : terrain.values()) {
+            loaded.put(Chunk.key(chunk.getChunkX(), chunk.getChunkZ()), chunk);
+            engine.stitch(chunk);
+        }
+        return new long[]{lit - start, System.nanoTime() - lit};
+    }
+
+    private static void report(String label, int chunks, long nanos) {
+        double millis = nanos / 1e6 / chunks;
+        System.out.printf("%-11s %5d chunks   %8.3f ms/chunk  %8.0f chunks/s%n", label, chunks, millis, 1000 / millis);
+    }
+
+    private static int mismatches(byte[] a, byte[] b) {
+        int count = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) count++;
+        }
+        return count;
+    }
+}
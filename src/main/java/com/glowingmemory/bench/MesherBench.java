@@ -0,0 +1,77 @@
+package com.glowingmemory.bench;
+
+import com.glowingmemory.world.Chunk;
+import com.glowingmemory.world.TerrainGenerator;
+import com.glowingmemory.world.light.LightEngine;
+import com.glowingmemory.world.mesh.ChunkSnapshot;
+import com.glowingmemory.world.mesh.MeshData;
+import com.glowingmemory.world.mesh.Mesher;
+import com.glowingmemory.world.mesh.VertexFormat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Headless comparison of the naive and greedy meshers, and of the greedy mesher's levels of detail,
+ * on generated terrain. Run with {@code make bench-mesher}.
+ */
+public class MesherBench {
+    private static final int RADIUS = 4;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        TerrainGenerator generator = new TerrainGenerator(42L);
+        Map<Long, Chunk> chunks = new HashMap<>();
+        for (int x = -RADIUS - 1; x <= RADIUS + 1; x++) {
+            for (int z = -RADIUS - 1; z <= RADIUS + 1; z++) {
+                Chunk chunk = new Chunk(x, z);
+                generator.generate(chunk);
+                LightEngine.lightChunk(chunk);
+                chunks.put(Chunk.key(x, z), chunk);
+            }
+        }
+
+        for (Mesher.Mode mode : Mesher.Mode.values()) {
+            run(chunks, mode, 0, mode.toString());
+        }
+        for (int lod = 1; lod <= Mesher.MAX_LOD; lod++) {
+            run(chunks, Mesher.Mode.GREEDY, lod, "LOD " + lod);
+        }
+    }
+
+    private static void run(Map<Long, Chunk> chunks, Mesher.Mode mode, int lod, String label) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            meshAll(chunks, mode, lod);
+        }
+        long vertices = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            vertices = meshAll(chunks, mode, lod);
+        }
+        double millis = (System.nanoTime() - start) / 1e6 / ROUNDS;
+        int meshed = (2 * RADIUS + 1) * (2 * RADIUS + 1);
+        System.out.printf("%-6s %5d chunks  %9d vertices  %8.1f KB  %7.2f ms total  %5.3f ms/chunk%n",
+                label, meshed, vertices, vertices * VertexFormat.BYTES_PER_VERTEX / 1024.0,
+                millis, millis / meshed);
+    }
+
+    private static long meshAll(Map<Long, Chunk> chunks, Mesher.Mode mode, int lod) {
+        long vertices = 0;
+        int[] visibility = new int[Chunk.SECTION_COUNT];
+        ChunkSnapshot snapshot = new ChunkSnapshot();
+        MeshData[] sections = new MeshData[Chunk.SECTION_COUNT];
+        for (int x = -RADIUS; x <= RADIUS; x++) {
+            for (int z = -RADIUS; z <= RADIUS; z++) {
+                snapshot.capture(chunks.get(Chunk.key(x, z)), lod,
+                        chunks.get(Chunk.key(x + 1, z)), chunks.get(Chunk.key(x - 1, z)),
+                        chunks.get(Chunk.key(x, z + 1)), chunks.get(Chunk.key(x, z - 1)));
+                Mesher.buildSectionMeshes(snapshot, mode, Chunk.ALL_SECTIONS, sections, visibility);
+                for (MeshData data : sections) {
+                    vertices += data.getVertexCount();
+                }
+            }
+        }
+        return vertices;
+    }
+}
@@ -0,0 +1,126 @@
+package com.glowingmemory.bench;
+
+import com.glowingmemory.world.Chunk;
+import com.glowingmemory.world.SimplexNoise;
+import com.glowingmemory.world.TerrainGenerator;
+
+/**
+ * Headless throughput of terrain noise: per-sample calls against the batch {@link SimplexNoise#fill} API
+ * over chunk-sized grids at the generator's three frequencies, and full chunk generation. Exits non-zero if
+ * a batch sample, or an fBm sum, differs from the scalar one. Run with {@code make bench-noise}.
+ */
+public class NoiseBench {
+    private static final int RADIUS = 8;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 20;
+
+    private interface Pass {
+        double run();
+    }
+
+    public static void main(String[] args) {
+        SimplexNoise noise = new SimplexNoise(42L);
+        checkExact(noise);
+        TerrainGenerator generator = new TerrainGenerator(42L);
+        double[] grid = new double[Chunk.SIZE * Chunk.SIZE];
+
+        run("scalar", () -> {
+            double sum = 0;
+            for (int cx = -RADIUS; cx < RADIUS; cx++) {
+                for (int cz = -RADIUS; cz < RADIUS; cz++) {
+                    for (int z = 0; z < Chunk.SIZE; z++) {
+                        for (int x = 0; x < Chunk.SIZE; x++) {
+                            int wx = cx * Chunk.SIZE + x;
+                            int wz = cz * Chunk.SIZE + z;
+                            sum += noise.noise(wx * 0.01, wz * 0.01) * 12 + noise.noise(wx * 0.05, wz * 0.05) * 3
+                                    + noise.noise(wx * 0.12, wz * 0.12);
+                        }
+                    }
+                }
+            }
+            return sum;
+        });
+        run("batch", () -> {
+            double sum = 0;
+            for (int cx = -RADIUS; cx < RADIUS; cx++) {
+                for (int cz = -RADIUS; cz < RADIUS; cz++) {
+                    noise.fill(grid, cx * Chunk.SIZE, cz * Chunk.SIZE, Chunk.SIZE, Chunk.SIZE, 0.01, 12, false);
+                    noise.fill(grid, cx * Chunk.SIZE, cz * Chunk.SIZE, Chunk.SIZE, Chunk.SIZE, 0.05, 3, true);
+                    noise.fill(grid, cx * Chunk.SIZE, cz * Chunk.SIZE, Chunk.SIZE, Chunk.SIZE, 0.12, 1, true);
+                    for (double value : grid) {
+                        sum += value;
+                    }
+                }
+            }
+            return sum;
+        });
+        run("chunks", () -> {
+            double sum = 0;
+            for (int cx = -RADIUS; cx < RADIUS; cx++) {
+                for (int cz = -RADIUS; cz < RADIUS; cz++) {
+                    Chunk chunk = new Chunk(cx, cz);
+                    generator.generate(chunk);
+                    sum += chunk.getMaxHeight();
+                }
+            }
+            return sum;
+        });
+    }
+
+    /**
+     * Batch samples, single layers and {@link SimplexNoise#fillFbm} octave sums alike, must equal scalar ones,
+     * or regenerated terrain would drift from saves. Compared as values since a zero may differ in sign.
+     */
+    private static void checkExact(SimplexNoise noise) {
+        int size = 64;
+        double[] batch = new double[size * size];
+        for (double frequency : new double[]{0.01, 0.05, 0.12, 0.7}) {
+            noise.fill(batch, -1000, 357, size, size, frequency, 3, false);
+            for (int z = 0; z < size; z++) {
+                for (int x = 0; x < size; x++) {
+                    double scalar = noise.noise((-1000 + x) * frequency, (357 + z) * frequency) * 3;
+                    if (scalar != batch[z * size + x]) {
+                        System.out.println("MISMATCH at " + x + ", " + z + " frequency " + frequency);
+                        System.exit(1);
+                    }
+                }
+            }
+        }
+        int octaves = 4;
+        noise.fillFbm(batch, -1000, 357, size, size, 0.01, 12, octaves, 2, 0.5);
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) {
+                double scalar = 0;
+                double frequency = 0.01;
+                double amplitude = 12;
+                for (int octave = 0; octave < octaves; octave++) {
+                    scalar += noise.noise((-1000 + x) * frequency, (357 + z) * frequency) * amplitude;
+                    frequency *= 2;
+                    amplitude *= 0.5;
+                }
+                if (scalar != batch[z * size + x]) {
+                    System.out.println("FBM MISMATCH at " + x + ", " + z);
+                    System.exit(1);
+                }
+            }
+        }
+    }
+
+    private static void run(String label, Pass pass) {
+        double checksum = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            checksum += pass.run();
+        }
+        // The best round rather than the mean: on a busy machine the mean mostly measures the neighbors.
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            checksum += pass.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double millis = best / 1e6;
+        int chunks = 4 * RADIUS * RADIUS;
+        System.out.printf("%-6s %5d chunks  %7.2f ms best   %9.0f chunks/s  (checksum %.3f)%n",
+                label, chunks, millis, chunks / (millis / 1000.0), checksum);
+    }
+}
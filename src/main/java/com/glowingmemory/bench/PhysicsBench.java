@@ -0,0 +1,156 @@
+package com.glowingmemory.bench;
+
+import com.glowingmemory.physics.BlockView;
+import com.glowingmemory.physics.Body;
+import com.glowingmemory.physics.CollisionSolver;
+import org.joml.Vector3f;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Scripted trajectories for {@link CollisionSolver} over a small hand-built grid: fast falls onto one-block
+ * floors, walls, ceilings, ledges and a body stuck inside a block. Then times a crowd of bodies and checks
+ * that moving them allocates nothing. Exits non-zero if any trajectory ends in the wrong place. Run with
+ * {@code make bench-physics}.
+ */
+public class PhysicsBench {
+    private static final float DT = 1f / 60f;
+    private static final float GRAVITY = -28f;
+    private static final int BODIES = 1000;
+    private static final int TICKS = 600;
+
+    private static int failures;
+
+    /** Solid cells inside a 64-block cube centred on the origin; everything outside is air. */
+    private static final class Grid implements BlockView {
+        private static final int SIZE = 64;
+        private final boolean[] solid = new boolean[SIZE * SIZE * SIZE];
+
+        Grid fill(int x0, int y0, int z0, int x1, int y1, int z1) {
+            for (int x = x0; x <= x1; x++) {
+                for (int y = y0; y <= y1; y++) {
+                    for (int z = z0; z <= z1; z++) {
+                        solid[index(x, y, z)] = true;
+                    }
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public boolean isSolid(int x, int y, int z) {
+            x += SIZE / 2;
+            y += SIZE / 2;
+            z += SIZE / 2;
+            if (x < 0 || y < 0 || z < 0 || x >= SIZE || y >= SIZE || z >= SIZE) return false;
+            return solid[(x * SIZE + y) * SIZE + z];
+        }
+
+        private static int index(int x, int y, int z) {
+            return ((x + SIZE / 2) * SIZE + y + SIZE / 2) * SIZE + z + SIZE / 2;
+        }
+    }
+
+    public static void main(String[] args) {
+        // A one-block floor at y = 0 and a wall at x = 5, two blocks tall.
+        Grid room = new Grid().fill(-20, 0, -20, 20, 0, 20).fill(5, 1, -20, 5, 2, 20);
+        CollisionSolver solver = new CollisionSolver(room);
+
+        Body faller = body(0.5f, 25f, 0.5f, 0f);
+        faller.getVelocity().y = -400f;
+        simulate(solver, faller, 60, true, 0, 0);
+        check("fast fall lands on a thin floor", near(faller.getMinY(), 1f) && faller.isOnGround());
+
+        Body walker = body(0f, 1.75f, 0.5f, 0.6f);
+        simulate(solver, walker, 120, true, 7f, 0);
+        check("walk stops at wall", near(walker.getPosition().x, 4.7f) && walker.isCollidedHorizontally());
+
+        Body slider = body(0f, 1.75f, 0.5f, 0.6f);
+        simulate(solver, slider, 60, true, 7f, 3f);
+        check("diagonal slides along wall", near(slider.getPosition().x, 4.7f) && slider.getPosition().z > 3f);
+
+        Body jumper = body(0f, 1.75f, 0.5f, 0f);
+        jumper.getVelocity().y = 9f;
+        Grid ceiling = new Grid().fill(-20, 0, -20, 20, 0, 20).fill(-20, 3, -20, 20, 3, 20);
+        simulate(new CollisionSolver(ceiling), jumper, 6, true, 0, 0);
+        float top = jumper.getPosition().y + 0.75f;
+        check("jump stops under ceiling", top <= 3f && top > 2.9f && jumper.getVelocity().y <= 0);
+
+        // A one-block ledge at x >= 5: a full-block step climbs it, a short one does not.
+        Grid ledge = new Grid().fill(-20, 0, -20, 20, 0, 20).fill(5, 1, -20, 20, 1, 20);
+        Body climber = body(0f, 1.75f, 0.5f, 1f);
+        simulate(new CollisionSolver(ledge), climber, 90, true, 7f, 0);
+        check("full step climbs ledge", climber.getPosition().x > 6f && near(climber.getMinY(), 2f));
+        Body blocked = body(0f, 1.75f, 0.5f, 0.6f);
+        simulate(new CollisionSolver(ledge), blocked, 90, true, 7f, 0);
+        check("short step stays below ledge", near(blocked.getPosition().x, 4.7f) && near(blocked.getMinY(), 1f));
+
+        Body buried = body(0.5f, 1.75f, 0.5f, 0f);
+        Grid pillar = new Grid().fill(-20, 0, -20, 20, 0, 20).fill(0, 1, 0, 0, 1, 0);
+        simulate(new CollisionSolver(pillar), buried, 60, true, 7f, 0);
+        check("body inside a block walks out", buried.getPosition().x > 2f && near(buried.getMinY(), 1f));
+
+        timeCrowd(solver);
+        if (failures > 0) {
+            System.out.println(failures + " FAILED");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    private static Body body(float x, float y, float z, float stepHeight) {
+        return new Body(new Vector3f(x, y, z), 0.6f, 1.5f, stepHeight);
+    }
+
+    private static void simulate(CollisionSolver solver, Body body, int ticks, boolean gravity, float vx, float vz) {
+        Vector3f velocity = body.getVelocity();
+        for (int i = 0; i < ticks; i++) {
+            velocity.x = vx;
+            velocity.z = vz;
+            if (gravity) velocity.y += GRAVITY * DT;
+            solver.move(body, DT);
+        }
+    }
+
+    private static void timeCrowd(CollisionSolver solver) {
+        Body[] crowd = new Body[BODIES];
+        for (int i = 0; i < BODIES; i++) {
+            crowd[i] = body((i % 31) * 0.37f - 6f, 3f + (i % 7), (i / 31) * 0.41f - 6f, 0.6f);
+        }
+        // Warm up before measuring so class loading and compilation do not count as allocation.
+        runCrowd(solver, crowd, TICKS);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        runCrowd(solver, crowd, TICKS);
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        long moves = (long) BODIES * TICKS;
+        System.out.printf("%d bodies x %d ticks  %7.1f ns/move  %d bytes allocated%n",
+                BODIES, TICKS, nanos / (double) moves, allocated);
+        check("moving bodies allocates nothing", allocated < 1024);
+    }
+
+    private static void runCrowd(CollisionSolver solver, Body[] crowd, int ticks) {
+        for (int t = 0; t < ticks; t++) {
+            for (int i = 0; i < crowd.length; i++) {
+                Vector3f velocity = crowd[i].getVelocity();
+                // Walk in circles so bodies keep running into the wall and each other's paths.
+                velocity.x = (float) Math.cos((t + i) * 0.02) * 7f;
+                velocity.z = (float) Math.sin((t + i) * 0.02) * 7f;
+                velocity.y += GRAVITY * DT;
+                if (crowd[i].isOnGround() && (t + i) % 97 == 0) velocity.y = 9f;
+                solver.move(crowd[i], DT);
+            }
+        }
+    }
+
+    private static void check(String label, boolean ok) {
+        System.out.printf("%-36s %s%n", label, ok ? "ok" : "FAIL");
+        if (!ok) failures++;
+    }
+
+    private static boolean near(float value, float expected) {
+        return Math.abs(value - expected) < 1e-2f;
+    }
+}
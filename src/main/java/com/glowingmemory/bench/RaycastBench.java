@@ -0,0 +1,119 @@
+package com.glowingmemory.bench;
+
+import com.glowingmemory.world.BlockSnapshot;
+import com.glowingmemory.world.Chunk;
+import com.glowingmemory.world.ChunkMap;
+import com.glowingmemory.world.Raycaster;
+import com.glowingmemory.world.TerrainGenerator;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Casts explosion-style bursts of rays through generated terrain one at a time against live chunks and in
+ * parallel against a {@link BlockSnapshot}. Exits non-zero if the two disagree on any ray or if single casts
+ * allocate. Run with {@code make bench-raycast}.
+ */
+public class RaycastBench {
+    private static final int RADIUS = 4;
+    private static final int RAYS = 20_000;
+    private static final float MAX_DISTANCE = 48f;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        TerrainGenerator generator = new TerrainGenerator(42L);
+        ChunkMap chunks = new ChunkMap();
+        for (int x = -RADIUS; x <= RADIUS; x++) {
+            for (int z = -RADIUS; z <= RADIUS; z++) {
+                Chunk chunk = new Chunk(x, z);
+                generator.generate(chunk);
+                chunks.putIfAbsent(chunk);
+            }
+        }
+        ChunkMap.Cursor cursor = chunks.cursor();
+        Raycaster.BlockSource live = (x, y, z) -> {
+            Chunk chunk = cursor.get(Math.floorDiv(x, Chunk.SIZE), Math.floorDiv(z, Chunk.SIZE));
+            return chunk != null ? chunk.getBlock(Math.floorMod(x, Chunk.SIZE), y, Math.floorMod(z, Chunk.SIZE)) : null;
+        };
+        int extent = RADIUS * Chunk.SIZE;
+        BlockSnapshot snapshot = BlockSnapshot.capture(chunks, -extent, -extent, extent + Chunk.SIZE - 1, extent + Chunk.SIZE - 1);
+
+        // Bursts of rays from a few points just above the surface, in every direction.
+        Random random = new Random(7);
+        float[] rays = new float[RAYS * 6];
+        for (int i = 0; i < RAYS; i++) {
+            int burst = i / 1000;
+            int bx = (burst * 37) % (2 * extent) - extent;
+            int bz = (burst * 53) % (2 * extent) - extent;
+            Chunk chunk = chunks.get(Math.floorDiv(bx, Chunk.SIZE), Math.floorDiv(bz, Chunk.SIZE));
+            rays[6 * i] = bx + 0.5f;
+            rays[6 * i + 1] = chunk.getHeight(Math.floorMod(bx, Chunk.SIZE), Math.floorMod(bz, Chunk.SIZE)) + 1.5f;
+            rays[6 * i + 2] = bz + 0.5f;
+            rays[6 * i + 3] = (float) random.nextGaussian();
+            rays[6 * i + 4] = (float) random.nextGaussian();
+            rays[6 * i + 5] = (float) random.nextGaussian();
+        }
+        Raycaster.RayHit[] serial = hits();
+        Raycaster.RayHit[] batch = hits();
+
+        int serialHits = 0;
+        int batchHits = 0;
+        long serialNanos = 0;
+        long batchNanos = 0;
+        long allocated = 0;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            serialHits = 0;
+            for (int i = 0; i < RAYS; i++) {
+                if (Raycaster.raycast(live, rays[6 * i], rays[6 * i + 1], rays[6 * i + 2],
+                        rays[6 * i + 3], rays[6 * i + 4], rays[6 * i + 5], MAX_DISTANCE, serial[i])) {
+                    serialHits++;
+                }
+            }
+            long middle = System.nanoTime();
+            long serialAllocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            batchHits = Raycaster.raycastAll(snapshot, rays, MAX_DISTANCE, batch);
+            long end = System.nanoTime();
+            if (round >= WARMUP_ROUNDS) {
+                serialNanos += middle - start;
+                batchNanos += end - middle;
+                allocated += serialAllocated;
+            }
+        }
+        report("serial", serialNanos, serialHits);
+        report("batch x" + Runtime.getRuntime().availableProcessors(), batchNanos, batchHits);
+        System.out.printf("serial casts allocated %d bytes%n", allocated);
+
+        int mismatches = 0;
+        for (int i = 0; i < RAYS; i++) {
+            Raycaster.RayHit a = serial[i];
+            Raycaster.RayHit b = batch[i];
+            if (a.block != b.block || a.block != null && (a.x != b.x || a.y != b.y || a.z != b.z
+                    || a.normalX != b.normalX || a.normalY != b.normalY || a.normalZ != b.normalZ)) {
+                mismatches++;
+            }
+        }
+        if (mismatches > 0 || serialHits != batchHits || allocated > 0) {
+            System.out.println("MISMATCH (" + mismatches + " rays)");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    private static Raycaster.RayHit[] hits() {
+        Raycaster.RayHit[] hits = new Raycaster.RayHit[RAYS];
+        for (int i = 0; i < RAYS; i++) {
+            hits[i] = new Raycaster.RayHit();
+        }
+        return hits;
+    }
+
+    private static void report(String label, long nanos, int hits) {
+        double millis = nanos / 1e6 / ROUNDS;
+        System.out.printf("%-10s %6d rays  %7.2f ms  %9.0f rays/s  %d hit%n",
+                label, RAYS, millis, RAYS / (millis / 1000.0), hits);
+    }
+}
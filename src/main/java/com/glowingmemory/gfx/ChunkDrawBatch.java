@@ -0,0 +1,143 @@
+package com.glowingmemory.gfx;
+
+import com.glowingmemory.util.Log;
+import com.glowingmemory.world.mesh.VertexArena;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL14;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.opengl.GL40;
+import org.lwjgl.opengl.GL43;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Collects the visible chunk sections of a frame and submits them from the shared {@link VertexArena}.
+ * With multi-draw-indirect (GL 4.3, or the ARB extensions with base instance) the whole frame is one
+ * {@code glMultiDrawArraysIndirect} call: each command's base instance selects the section's chunk offset
+ * from an instanced attribute. On plain GL 3.3 consecutive sections of the same chunk go out as one
+ * {@code glMultiDrawArrays}, with the offset set as a constant attribute value in between.
+ */
+public class ChunkDrawBatch {
+    private static final int OFFSET_ATTRIBUTE = 1;
+    private static final int COMMAND_INTS = 4;
+
+    private final boolean indirect;
+    private int commandBuffer;
+    private int offsetBuffer;
+    private IntBuffer commands;
+    private FloatBuffer offsets;
+    private IntBuffer firsts;
+    private IntBuffer counts;
+    private int size;
+    private int drawCalls;
+
+    public ChunkDrawBatch(VertexArena arena) {
+        GLCapabilities caps = GL.getCapabilities();
+        indirect = caps.OpenGL43 || (caps.GL_ARB_multi_draw_indirect && caps.GL_ARB_base_instance);
+        int initial = 1024;
+        offsets = MemoryUtil.memAllocFloat(initial * 3);
+        firsts = MemoryUtil.memAllocInt(initial);
+        counts = MemoryUtil.memAllocInt(initial);
+        if (indirect) {
+            commands = MemoryUtil.memAllocInt(initial * COMMAND_INTS);
+            commandBuffer = GL15.glGenBuffers();
+            offsetBuffer = GL15.glGenBuffers();
+            GL30.glBindVertexArray(arena.getVao());
+            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, offsetBuffer);
+            GL20.glVertexAttribPointer(OFFSET_ATTRIBUTE, 3, GL11.GL_FLOAT, false, 3 * Float.BYTES, 0);
+            GL33.glVertexAttribDivisor(OFFSET_ATTRIBUTE, 1);
+            GL20.glEnableVertexAttribArray(OFFSET_ATTRIBUTE);
+            GL30.glBindVertexArray(0);
+            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        }
+        Log.info("Chunk rendering uses " + (indirect ? "multi-draw-indirect" : "glMultiDrawArrays per chunk"));
+    }
+
+    public void begin() {
+        size = 0;
+    }
+
+    public void add(int firstVertex, int vertexCount, float offsetX, float offsetZ) {
+        if (size == firsts.capacity()) expand();
+        firsts.put(size, firstVertex);
+        counts.put(size, vertexCount);
+        offsets.put(size * 3, offsetX);
+        offsets.put(size * 3 + 1, 0f);
+        offsets.put(size * 3 + 2, offsetZ);
+        if (indirect) {
+            int c = size * COMMAND_INTS;
+            commands.put(c, vertexCount);
+            commands.put(c + 1, 1);
+            commands.put(c + 2, firstVertex);
+            commands.put(c + 3, size);
+        }
+        size++;
+    }
+
+    public void draw(VertexArena arena) {
+        drawCalls = 0;
+        if (size == 0) return;
+        GL30.glBindVertexArray(arena.getVao());
+        if (indirect) {
+            offsets.limit(size * 3);
+            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, offsetBuffer);
+            GL15.glBufferData(GL15.GL_ARRAY_BUFFER, offsets, GL15.GL_STREAM_DRAW);
+            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+            offsets.clear();
+            commands.limit(size * COMMAND_INTS);
+            GL15.glBindBuffer(GL40.GL_DRAW_INDIRECT_BUFFER, commandBuffer);
+            GL15.glBufferData(GL40.GL_DRAW_INDIRECT_BUFFER, commands, GL15.GL_STREAM_DRAW);
+            commands.clear();
+            GL43.glMultiDrawArraysIndirect(GL11.GL_TRIANGLES, 0L, size, 0);
+            GL15.glBindBuffer(GL40.GL_DRAW_INDIRECT_BUFFER, 0);
+            drawCalls = 1;
+        } else {
+            int start = 0;
+            while (start < size) {
+                float x = offsets.get(start * 3);
+                float z = offsets.get(start * 3 + 2);
+                int end = start + 1;
+                while (end < size && offsets.get(end * 3) == x && offsets.get(end * 3 + 2) == z) end++;
+                GL20.glVertexAttrib3f(OFFSET_ATTRIBUTE, x, 0f, z);
+                firsts.position(start).limit(end);
+                counts.position(start).limit(end);
+                GL14.glMultiDrawArrays(GL11.GL_TRIANGLES, firsts, counts);
+                drawCalls++;
+                start = end;
+            }
+            firsts.clear();
+            counts.clear();
+        }
+        GL30.glBindVertexArray(0);
+    }
+
+    private void expand() {
+        int capacity = firsts.capacity() * 2;
+        offsets = MemoryUtil.memRealloc(offsets, capacity * 3);
+        firsts = MemoryUtil.memRealloc(firsts, capacity);
+        counts = MemoryUtil.memRealloc(counts, capacity);
+        if (indirect) commands = MemoryUtil.memRealloc(commands, capacity * COMMAND_INTS);
+    }
+
+    public int getDrawCalls() { return drawCalls; }
+
+    public boolean isIndirect() { return indirect; }
+
+    public void destroy() {
+        MemoryUtil.memFree(offsets);
+        MemoryUtil.memFree(firsts);
+        MemoryUtil.memFree(counts);
+        if (indirect) {
+            MemoryUtil.memFree(commands);
+            GL15.glDeleteBuffers(commandBuffer);
+            GL15.glDeleteBuffers(offsetBuffer);
+        }
+    }
+}
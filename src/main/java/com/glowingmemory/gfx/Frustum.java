@@ -0,0 +1,46 @@
+package com.glowingmemory.gfx;
+
+import org.joml.Matrix4f;
+
+/**
+ * The six clip planes of a projection * view matrix (Gribb/Hartmann extraction), for culling axis-aligned
+ * boxes in world space. Planes are stored as a, b, c, d with the normal pointing into the frustum.
+ */
+public class Frustum {
+    private final float[] planes = new float[6 * 4];
+
+    public void update(Matrix4f projView) {
+        Matrix4f m = projView;
+        setPlane(0, m.m03() + m.m00(), m.m13() + m.m10(), m.m23() + m.m20(), m.m33() + m.m30()); // left
+        setPlane(1, m.m03() - m.m00(), m.m13() - m.m10(), m.m23() - m.m20(), m.m33() - m.m30()); // right
+        setPlane(2, m.m03() + m.m01(), m.m13() + m.m11(), m.m23() + m.m21(), m.m33() + m.m31()); // bottom
+        setPlane(3, m.m03() - m.m01(), m.m13() - m.m11(), m.m23() - m.m21(), m.m33() - m.m31()); // top
+        setPlane(4, m.m03() + m.m02(), m.m13() + m.m12(), m.m23() + m.m22(), m.m33() + m.m32()); // near
+        setPlane(5, m.m03() - m.m02(), m.m13() - m.m12(), m.m23() - m.m22(), m.m33() - m.m32()); // far
+    }
+
+    private void setPlane(int plane, float a, float b, float c, float d) {
+        int i = plane * 4;
+        planes[i] = a;
+        planes[i + 1] = b;
+        planes[i + 2] = c;
+        planes[i + 3] = d;
+    }
+
+    /**
+     * True if the box may be visible. Only the corner furthest along each plane normal is tested, so
+     * boxes near a frustum corner can pass although they are outside; they are never wrongly rejected.
+     */
+    public boolean testAab(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        for (int i = 0; i < planes.length; i += 4) {
+            float a = planes[i];
+            float b = planes[i + 1];
+            float c = planes[i + 2];
+            float x = a >= 0 ? maxX : minX;
+            float y = b >= 0 ? maxY : minY;
+            float z = c >= 0 ? maxZ : minZ;
+            if (a * x + b * y + c * z + planes[i + 3] < 0) return false;
+        }
+        return true;
+    }
+}
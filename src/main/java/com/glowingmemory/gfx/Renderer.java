@@ -5,6 +5,8 @@ import com.glowingmemory.world.Block;
 import com.glowingmemory.world.Chunk;
 import com.glowingmemory.world.World;
 import com.glowingmemory.world.mesh.ChunkMesh;
+import com.glowingmemory.world.mesh.VertexArena;
+import com.glowingmemory.world.mesh.VertexFormat;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
 import org.lwjgl.opengl.GL11;
@@ -12,21 +14,72 @@ import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Renderer {
+    private static final int INITIAL_ARENA_VERTICES = 1 << 20;
+    private static final float CROSSHAIR_SIZE = 0.02f;
+    private static final float[] CROSSHAIR_VERTS = {
+            -CROSSHAIR_SIZE, 0,
+            CROSSHAIR_SIZE, 0,
+            0, -CROSSHAIR_SIZE,
+            0, CROSSHAIR_SIZE
+    };
+
+    private final Window window;
     private Shader chunkShader;
     private Shader uiShader;
     private TextRenderer textRenderer;
     private int lineVao;
     private int lineVbo;
+    private final SectionCuller culler = new SectionCuller();
+    private VertexArena vertexArena;
+    private ChunkDrawBatch drawBatch;
+    private int chunkProjectionLoc;
+    private int chunkViewLoc;
+    private int uiProjectionLoc;
+    private int uiColorLoc;
+    private final Matrix4f projection = new Matrix4f();
+    private final Matrix4f view = new Matrix4f();
+    private final Matrix4f projView = new Matrix4f();
+    private final Matrix4f uiProjection = new Matrix4f();
+    private final float[] quadVerts = new float[8];
+    // Dynamic overlay text is built here line by line; TextRenderer copies each line out right away.
+    private final StringBuilder line = new StringBuilder(128);
+    private final List<Chunk> renderList = new ArrayList<>();
+
+    public Renderer(Window window) {
+        this.window = window;
+    }
 
     public void init() {
         chunkShader = new Shader("shaders/chunk.vert", "shaders/chunk.frag");
         uiShader = new Shader("shaders/ui.vert", "shaders/ui.frag");
+        chunkProjectionLoc = chunkShader.getUniformLocation("projection");
+        chunkViewLoc = chunkShader.getUniformLocation("view");
+        uiProjectionLoc = uiShader.getUniformLocation("projection");
+        uiColorLoc = uiShader.getUniformLocation("color");
         textRenderer = new TextRenderer();
         lineVao = GL30.glGenVertexArrays();
         lineVbo = GL15.glGenBuffers();
+        vertexArena = new VertexArena(INITIAL_ARENA_VERTICES);
+        drawBatch = new ChunkDrawBatch(vertexArena);
+        uploadBlockPalette();
+    }
+
+    private void uploadBlockPalette() {
+        float[] palette = new float[VertexFormat.PALETTE_SIZE * 4];
+        for (Block block : Block.values()) {
+            int i = block.ordinal() * 4;
+            palette[i] = block.color.x;
+            palette[i + 1] = block.color.y;
+            palette[i + 2] = block.color.z;
+            palette[i + 3] = block.renderHeight;
+        }
+        chunkShader.bind();
+        chunkShader.setVector4fArray(chunkShader.getUniformLocation("palette"), palette);
+        chunkShader.unbind();
     }
 
     public void render(World world, Player player) {
@@ -38,24 +91,23 @@ public class Renderer {
 
     private void renderChunks(World world, Player player) {
         chunkShader.bind();
-        Matrix4f proj = player.getCamera().getProjectionMatrix(getAspect());
-        Matrix4f view = player.getCamera().getViewMatrix();
-        int projLoc = GL20.glGetUniformLocation(chunkShader.getProgramId(), "projection");
-        int viewLoc = GL20.glGetUniformLocation(chunkShader.getProgramId(), "view");
-        GL20.glUniformMatrix4fv(projLoc, false, proj.get(new float[16]));
-        GL20.glUniformMatrix4fv(viewLoc, false, view.get(new float[16]));
-
-        Collection<Chunk> renderChunks = world.getChunksToRender(player.getCamera().getPosition());
-        for (Chunk chunk : renderChunks) {
-            ChunkMesh mesh = chunk.getMesh();
-            if (mesh == null) continue;
-            Matrix4f model = new Matrix4f().translation(chunk.getChunkX() * Chunk.SIZE, 0, chunk.getChunkZ() * Chunk.SIZE);
-            int modelLoc = GL20.glGetUniformLocation(chunkShader.getProgramId(), "model");
-            GL20.glUniformMatrix4fv(modelLoc, false, model.get(new float[16]));
-            GL30.glBindVertexArray(mesh.getVao());
-            GL11.glDrawArrays(GL11.GL_TRIANGLES, 0, mesh.getVertexCount());
+        player.getCamera().getProjectionMatrix(getAspect(), projection);
+        player.getCamera().getViewMatrix(view);
+        chunkShader.setMatrix4f(chunkProjectionLoc, projection);
+        chunkShader.setMatrix4f(chunkViewLoc, view);
+
+        Vector3f cameraPos = player.getCamera().getPosition();
+        world.getChunksToRender(cameraPos, renderList);
+        int count = culler.cull(renderList, world.getViewDistance(), cameraPos, projection.mul(view, projView));
+        renderList.clear();
+        drawBatch.begin();
+        for (int i = 0; i < count; i++) {
+            Chunk chunk = culler.getChunk(i);
+            ChunkMesh mesh = chunk.getMesh(culler.getSection(i));
+            drawBatch.add(mesh.getFirstVertex(), mesh.getVertexCount(),
+                    chunk.getChunkX() * Chunk.SIZE, chunk.getChunkZ() * Chunk.SIZE);
         }
-        GL30.glBindVertexArray(0);
+        drawBatch.draw(vertexArena);
         chunkShader.unbind();
     }
 
@@ -68,29 +120,20 @@ public class Renderer {
         }
         drawDebug(world, player);
         drawMenu(world, player);
+        textRenderer.flush(getWidth(), getHeight());
         GL11.glDisable(GL11.GL_BLEND);
         GL11.glEnable(GL11.GL_DEPTH_TEST);
     }
 
     private void drawCrosshair(World world) {
-        float size = 0.02f;
-        float[] verts = {
-                -size, 0,
-                size, 0,
-                0, -size,
-                0, size
-        };
         GL30.glBindVertexArray(lineVao);
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, lineVbo);
-        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, verts, GL15.GL_STREAM_DRAW);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, CROSSHAIR_VERTS, GL15.GL_STREAM_DRAW);
         GL20.glVertexAttribPointer(0, 2, GL11.GL_FLOAT, false, 2 * Float.BYTES, 0);
         GL20.glEnableVertexAttribArray(0);
         uiShader.bind();
-        Matrix4f proj = new Matrix4f().ortho(-getAspect(), getAspect(), 1, -1, -1, 1);
-        int projLoc = GL20.glGetUniformLocation(uiShader.getProgramId(), "projection");
-        GL20.glUniformMatrix4fv(projLoc, false, proj.get(new float[16]));
-        int colorLoc = GL20.glGetUniformLocation(uiShader.getProgramId(), "color");
-        GL20.glUniform4f(colorLoc, 0.05f, 0.05f, 0.05f, 1f);
+        uiShader.setMatrix4f(uiProjectionLoc, uiProjection.setOrtho(-getAspect(), getAspect(), 1, -1, -1, 1));
+        uiShader.setVector4f(uiColorLoc, 0.05f, 0.05f, 0.05f, 1f);
         GL11.glDrawArrays(GL11.GL_LINES, 0, 4);
         uiShader.unbind();
         GL20.glDisableVertexAttribArray(0);
@@ -98,30 +141,66 @@ public class Renderer {
 
     private void drawDebug(World world, Player player) {
         if (!player.isDebugOpen()) return;
-        int width = getWidth();
-        int height = getHeight();
         Vector3f pos = player.getCamera().getPosition();
-        String text = String.format("XYZ: %.2f %.2f %.2f | Chunk: %d %d | View: %d", pos.x, pos.y, pos.z,
-                (int) Math.floor(pos.x / Chunk.SIZE), (int) Math.floor(pos.z / Chunk.SIZE), world.getViewDistance());
-        textRenderer.drawText(text, 16, 32, 1f, width, height);
-        textRenderer.drawText("FOV: " + player.getCamera().getFov(), 16, 56, 1f, width, height);
+        StringBuilder line = this.line;
+        line.setLength(0);
+        line.append("XYZ: ");
+        appendFixed(line, pos.x).append(' ');
+        appendFixed(line, pos.y).append(' ');
+        appendFixed(line, pos.z).append(" | Chunk: ").append((int) Math.floor(pos.x / Chunk.SIZE)).append(' ')
+                .append((int) Math.floor(pos.z / Chunk.SIZE)).append(" | View: ").append(world.getViewDistance());
+        textRenderer.drawText(line, 16, 32, 1f);
+        line.setLength(0);
+        line.append("FOV: ").append(player.getCamera().getFov());
+        textRenderer.drawText(line, 16, 56, 1f);
+        line.setLength(0);
+        line.append("Chunks: ").append(world.getLoadedChunkCount()).append(" loaded | ").append(world.getCache().size())
+                .append(" cached (").append(world.getCache().getMemoryBytes() / 1024).append(" KB)");
+        textRenderer.drawText(line, 16, 80, 1f);
+        line.setLength(0);
+        line.append("Sections: ").append(culler.getDrawnCount()).append(" drawn | ").append(culler.getFrustumCulledCount())
+                .append(" frustum culled | ").append(culler.getOccludedCount()).append(" occluded");
+        textRenderer.drawText(line, 16, 104, 1f);
+        line.setLength(0);
+        line.append("Draw calls: ").append(drawBatch.getDrawCalls())
+                .append(drawBatch.isIndirect() ? " (indirect)" : " (multi-draw)").append(" | Arena: ")
+                .append(vertexArena.getUsedVertices() * VertexFormat.BYTES_PER_VERTEX / 1024).append(" / ")
+                .append(vertexArena.getCapacityVertices() * VertexFormat.BYTES_PER_VERTEX / 1024).append(" KB");
+        textRenderer.drawText(line, 16, 128, 1f);
+    }
+
+    /** Appends {@code value} with two decimals, as {@code %.2f} would, without allocating. */
+    private static StringBuilder appendFixed(StringBuilder out, float value) {
+        long hundredths = Math.round(Math.abs((double) value) * 100);
+        if (value < 0 && hundredths != 0) out.append('-');
+        out.append(hundredths / 100).append('.');
+        long fraction = hundredths % 100;
+        if (fraction < 10) out.append('0');
+        return out.append(fraction);
     }
 
     private void drawMenu(World world, Player player) {
         if (!player.isMenuOpen()) return;
-        int width = getWidth();
         int height = getHeight();
-        drawMenuBackdrop(width, height);
-        textRenderer.drawText("Spawn Menu (Q to close)", 16, height / 2f - 120, 1.2f, width, height);
-        textRenderer.drawText("1-9 select block | Left click break | Right click place", 16, height / 2f - 92, 1f, width, height);
-        textRenderer.drawText("E: View distance (" + world.getViewDistance() + ")  F: Wireframe(" + world.isWireframe() + ")", 16, height / 2f - 68, 1f, width, height);
-        textRenderer.drawText("Z/X: Adjust FOV  F3: Debug  ESC: Quit", 16, height / 2f - 44, 1f, width, height);
+        drawMenuBackdrop(getWidth(), height);
+        textRenderer.drawText("Spawn Menu (Q to close)", 16, height / 2f - 120, 1.2f);
+        textRenderer.drawText("1-9 select block | Left click break | Right click place", 16, height / 2f - 92, 1f);
+        StringBuilder line = this.line;
+        line.setLength(0);
+        line.append("E: View distance (").append(world.getViewDistance()).append(")  F: Wireframe(")
+                .append(world.isWireframe()).append(')');
+        textRenderer.drawText(line, 16, height / 2f - 68, 1f);
+        line.setLength(0);
+        line.append("Z/X: Adjust FOV  G: Meshing(").append(world.getMeshingMode().name()).append(")  F3: Debug  ESC: Quit");
+        textRenderer.drawText(line, 16, height / 2f - 44, 1f);
 
         float startY = height / 2f;
-        for (int i = 1; i < Block.values().length && i <= 9; i++) {
-            Block block = Block.values()[i];
-            String label = String.format("%d: %s%s", i, block.name(), player.getSelectedSlot() == i ? " <-" : "");
-            textRenderer.drawText(label, 32, startY + (i - 1) * 22, 1f, width, height);
+        for (int i = 1; i < Block.count() && i <= 9; i++) {
+            Block block = Block.byId(i);
+            line.setLength(0);
+            line.append(i).append(": ").append(block.name());
+            if (player.getSelectedSlot() == i) line.append(" <-");
+            textRenderer.drawText(line, 32, startY + (i - 1) * 22, 1f);
         }
     }
 
@@ -130,29 +209,33 @@ public class Renderer {
         float panelHeight = height * 0.6f;
         float x = (width - panelWidth) / 2f;
         float y = (height - panelHeight) / 2f;
-        float[] verts = {
-                x, y,
-                x + panelWidth, y,
-                x, y + panelHeight,
-                x + panelWidth, y + panelHeight
-        };
+        float[] verts = quadVerts;
+        verts[0] = x;
+        verts[1] = y;
+        verts[2] = x + panelWidth;
+        verts[3] = y;
+        verts[4] = x;
+        verts[5] = y + panelHeight;
+        verts[6] = x + panelWidth;
+        verts[7] = y + panelHeight;
         GL30.glBindVertexArray(lineVao);
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, lineVbo);
         GL15.glBufferData(GL15.GL_ARRAY_BUFFER, verts, GL15.GL_STREAM_DRAW);
         GL20.glVertexAttribPointer(0, 2, GL11.GL_FLOAT, false, 2 * Float.BYTES, 0);
         GL20.glEnableVertexAttribArray(0);
         uiShader.bind();
-        Matrix4f proj = new Matrix4f().ortho(0, width, height, 0, -1, 1);
-        int projLoc = GL20.glGetUniformLocation(uiShader.getProgramId(), "projection");
-        GL20.glUniformMatrix4fv(projLoc, false, proj.get(new float[16]));
-        int colorLoc = GL20.glGetUniformLocation(uiShader.getProgramId(), "color");
-        GL20.glUniform4f(colorLoc, 0f, 0f, 0f, 0.45f);
+        uiShader.setMatrix4f(uiProjectionLoc, uiProjection.setOrtho(0, width, height, 0, -1, 1));
+        uiShader.setVector4f(uiColorLoc, 0f, 0f, 0f, 0.45f);
         GL11.glDrawArrays(GL11.GL_TRIANGLE_STRIP, 0, 4);
         uiShader.unbind();
         GL20.glDisableVertexAttribArray(0);
     }
 
+    public VertexArena getVertexArena() { return vertexArena; }
+
     public void destroy() {
+        drawBatch.destroy();
+        vertexArena.destroy();
         chunkShader.destroy();
         uiShader.destroy();
         textRenderer.destroy();
@@ -163,14 +246,10 @@ public class Renderer {
     }
 
     public int getWidth() {
-        int[] viewport = new int[4];
-        GL11.glGetIntegerv(GL11.GL_VIEWPORT, viewport);
-        return viewport[2];
+        return window.getWidth();
     }
 
     public int getHeight() {
-        int[] viewport = new int[4];
-        GL11.glGetIntegerv(GL11.GL_VIEWPORT, viewport);
-        return viewport[3];
+        return window.getHeight();
     }
 }
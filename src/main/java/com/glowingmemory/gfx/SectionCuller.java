@@ -0,0 +1,193 @@
+package com.glowingmemory.gfx;
+
+import com.glowingmemory.world.Chunk;
+import com.glowingmemory.world.mesh.ChunkMesh;
+import com.glowingmemory.world.mesh.SectionVisibility;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Picks the chunk sections to draw each frame. Starting from the camera's section, a breadth-first walk
+ * steps through neighboring sections only where the section's face connectivity allows it, never turns
+ * back against a direction it already took and never leaves the view frustum; only the sections it
+ * reaches are drawn. When the camera is above or below the world it falls back to frustum culling alone.
+ */
+public class SectionCuller {
+    private static final int SECTION_HEIGHT = Chunk.HEIGHT / Chunk.SECTION_COUNT;
+    private static final int SECTIONS = Chunk.SECTION_COUNT;
+    private static final int[] FACE_OFFSETS = {
+            1, 0, 0,
+            -1, 0, 0,
+            0, 1, 0,
+            0, -1, 0,
+            0, 0, 1,
+            0, 0, -1
+    };
+    private static final byte UNVISITED = 0;
+    private static final byte OUTSIDE_FRUSTUM = 1;
+    private static final byte REACHED = 2;
+
+    private final Frustum frustum = new Frustum();
+    private Chunk[] grid = new Chunk[0];
+    private byte[] state = new byte[0];
+    private byte[] entryFace = new byte[0];
+    private byte[] directions = new byte[0];
+    private int[] queue = new int[0];
+    private long[] drawOrder = new long[256];
+    private int size;
+    private int originX;
+    private int originZ;
+    private int drawn;
+    private int frustumCulled;
+    private int occluded;
+
+    /**
+     * Collects the visible sections of {@code chunks} (all within {@code radius} chunks of the camera),
+     * nearest first so that early depth testing rejects most hidden fragments, and returns their count.
+     */
+    public int cull(List<Chunk> chunks, int radius, Vector3f cameraPos, Matrix4f projView) {
+        frustum.update(projView);
+        int cameraChunkX = (int) Math.floor(cameraPos.x / Chunk.SIZE);
+        int cameraChunkZ = (int) Math.floor(cameraPos.z / Chunk.SIZE);
+        resize(radius * 2 + 1);
+        originX = cameraChunkX - radius;
+        originZ = cameraChunkZ - radius;
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            int gx = chunk.getChunkX() - originX;
+            int gz = chunk.getChunkZ() - originZ;
+            if (gx >= 0 && gx < size && gz >= 0 && gz < size) grid[gx * size + gz] = chunk;
+        }
+
+        int cameraSection = (int) Math.floor(cameraPos.y / SECTION_HEIGHT);
+        int start = (radius * size + radius) * SECTIONS + cameraSection;
+        if (cameraSection >= 0 && cameraSection < SECTIONS && grid[start / SECTIONS] != null) {
+            walk(start);
+        } else {
+            markInsideFrustum();
+        }
+        return collect(cameraPos);
+    }
+
+    private void resize(int newSize) {
+        size = newSize;
+        int nodes = size * size * SECTIONS;
+        if (state.length != nodes) {
+            grid = new Chunk[size * size];
+            state = new byte[nodes];
+            entryFace = new byte[nodes];
+            directions = new byte[nodes];
+            queue = new int[nodes];
+        } else {
+            Arrays.fill(grid, null);
+            Arrays.fill(state, UNVISITED);
+        }
+    }
+
+    private void walk(int start) {
+        state[start] = REACHED;
+        entryFace[start] = -1;
+        directions[start] = 0;
+        queue[0] = start;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int node = queue[head++];
+            int column = node / SECTIONS;
+            int section = node % SECTIONS;
+            int gx = column / size;
+            int gz = column % size;
+            int visibility = grid[column].getVisibility(section);
+            int entry = entryFace[node];
+            int dirs = directions[node];
+            for (int face = 0; face < 6; face++) {
+                if ((dirs & (1 << (face ^ 1))) != 0) continue;
+                if (entry >= 0 && !SectionVisibility.connects(visibility, entry, face)) continue;
+                int nx = gx + FACE_OFFSETS[face * 3];
+                int ny = section + FACE_OFFSETS[face * 3 + 1];
+                int nz = gz + FACE_OFFSETS[face * 3 + 2];
+                if (nx < 0 || nx >= size || nz < 0 || nz >= size || ny < 0 || ny >= SECTIONS) continue;
+                int neighborColumn = nx * size + nz;
+                if (grid[neighborColumn] == null) continue;
+                int neighbor = neighborColumn * SECTIONS + ny;
+                if (state[neighbor] != UNVISITED) continue;
+                if (!inFrustum(neighborColumn, ny)) {
+                    state[neighbor] = OUTSIDE_FRUSTUM;
+                    continue;
+                }
+                state[neighbor] = REACHED;
+                entryFace[neighbor] = (byte) (face ^ 1);
+                directions[neighbor] = (byte) (dirs | (1 << face));
+                queue[tail++] = neighbor;
+            }
+        }
+    }
+
+    private void markInsideFrustum() {
+        for (int column = 0; column < grid.length; column++) {
+            if (grid[column] == null) continue;
+            for (int section = 0; section < SECTIONS; section++) {
+                state[column * SECTIONS + section] = inFrustum(column, section) ? REACHED : OUTSIDE_FRUSTUM;
+            }
+        }
+    }
+
+    private int collect(Vector3f cameraPos) {
+        int count = 0;
+        frustumCulled = 0;
+        occluded = 0;
+        for (int column = 0; column < grid.length; column++) {
+            Chunk chunk = grid[column];
+            if (chunk == null) continue;
+            for (int section = 0; section < SECTIONS; section++) {
+                ChunkMesh mesh = chunk.getMesh(section);
+                if (mesh == null || mesh.getVertexCount() == 0) continue;
+                int node = column * SECTIONS + section;
+                byte nodeState = state[node];
+                if (nodeState == UNVISITED) nodeState = inFrustum(column, section) ? REACHED : OUTSIDE_FRUSTUM;
+                if (nodeState == OUTSIDE_FRUSTUM) {
+                    frustumCulled++;
+                    continue;
+                }
+                if (state[node] != REACHED) {
+                    occluded++;
+                    continue;
+                }
+                float dx = chunk.getChunkX() * Chunk.SIZE + Chunk.SIZE / 2f - cameraPos.x;
+                float dy = section * SECTION_HEIGHT + SECTION_HEIGHT / 2f - cameraPos.y;
+                float dz = chunk.getChunkZ() * Chunk.SIZE + Chunk.SIZE / 2f - cameraPos.z;
+                long distance = (long) (dx * dx + dy * dy + dz * dz);
+                if (count == drawOrder.length) drawOrder = Arrays.copyOf(drawOrder, count * 2);
+                drawOrder[count++] = distance << 32 | node;
+            }
+        }
+        Arrays.sort(drawOrder, 0, count);
+        drawn = count;
+        return count;
+    }
+
+    private boolean inFrustum(int column, int section) {
+        float minX = (originX + column / size) * Chunk.SIZE;
+        float minZ = (originZ + column % size) * Chunk.SIZE;
+        float minY = section * SECTION_HEIGHT;
+        return frustum.testAab(minX, minY, minZ, minX + Chunk.SIZE, minY + SECTION_HEIGHT, minZ + Chunk.SIZE);
+    }
+
+    /** The chunk of the {@code i}-th visible section, in draw order. */
+    public Chunk getChunk(int i) {
+        return grid[(int) drawOrder[i] / SECTIONS];
+    }
+
+    public int getSection(int i) {
+        return (int) drawOrder[i] % SECTIONS;
+    }
+
+    public int getDrawnCount() { return drawn; }
+
+    public int getFrustumCulledCount() { return frustumCulled; }
+
+    public int getOccludedCount() { return occluded; }
+}
@@ -1,13 +1,20 @@
 package com.glowingmemory.gfx;
 
+import org.joml.Matrix4f;
 import org.lwjgl.opengl.GL20;
+import org.lwjgl.system.MemoryStack;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 
 public class Shader {
     private final int programId;
+    private final Map<String, Integer> uniforms = new HashMap<>();
 
     public Shader(String vertexPath, String fragmentPath) {
         try {
@@ -24,6 +31,7 @@ public class Shader {
             }
             GL20.glDeleteShader(vertex);
             GL20.glDeleteShader(fragment);
+            cacheUniformLocations();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -46,6 +54,48 @@ public class Shader {
         return shader;
     }
 
+    /** Resolves every active uniform once after linking; arrays are stored under their bare name. */
+    private void cacheUniformLocations() {
+        int count = GL20.glGetProgrami(programId, GL20.GL_ACTIVE_UNIFORMS);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer size = stack.mallocInt(1);
+            IntBuffer type = stack.mallocInt(1);
+            for (int i = 0; i < count; i++) {
+                String name = GL20.glGetActiveUniform(programId, i, size, type);
+                if (name.endsWith("[0]")) name = name.substring(0, name.length() - 3);
+                uniforms.put(name, GL20.glGetUniformLocation(programId, name));
+            }
+        }
+    }
+
+    /** The cached location of a uniform, or -1 if the program has no active uniform of that name. */
+    public int getUniformLocation(String name) {
+        Integer location = uniforms.get(name);
+        return location != null ? location : -1;
+    }
+
+    public void setMatrix4f(int location, Matrix4f value) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            FloatBuffer buffer = stack.mallocFloat(16);
+            value.get(buffer);
+            GL20.glUniformMatrix4fv(location, false, buffer);
+        }
+    }
+
+    public void setVector3f(int location, float x, float y, float z) {
+        GL20.glUniform3f(location, x, y, z);
+    }
+
+    public void setVector4f(int location, float x, float y, float z, float w) {
+        GL20.glUniform4f(location, x, y, z, w);
+    }
+
+    public void setVector4fArray(int location, float[] values) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            GL20.glUniform4fv(location, stack.floats(values));
+        }
+    }
+
     public void bind() {
         GL20.glUseProgram(programId);
     }
@@ -1,28 +1,71 @@
 package com.glowingmemory.gfx;
 
 import org.joml.Matrix4f;
-import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
 import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
-import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
 
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * Bitmap text from a 5x7 pixel font. The glyphs are rasterized once into a single-channel atlas texture;
+ * each character is one textured quad. Strings queued with {@link #drawText} during a frame are gathered
+ * into one vertex buffer and drawn with a single call by {@link #flush}. The quads of recently drawn
+ * strings are cached, so unchanged labels are only copied, not rebuilt.
+ */
 public class TextRenderer {
+    private static final int GLYPH_WIDTH = 5;
+    private static final int GLYPH_HEIGHT = 7;
+    private static final int ADVANCE = GLYPH_WIDTH + 1;
+    private static final int ATLAS_COLUMNS = 16;
+    private static final int CELL_WIDTH = GLYPH_WIDTH + 1;
+    private static final int CELL_HEIGHT = GLYPH_HEIGHT + 1;
+    private static final int FLOATS_PER_VERTEX = 4;
+    private static final int FLOATS_PER_GLYPH = 6 * FLOATS_PER_VERTEX;
+    private static final int CACHE_SIZE = 256;
+
     private final Shader shader;
     private final int vao;
     private final int vbo;
-    private final Map<Character, boolean[]> glyphs = new HashMap<>();
+    private final int atlas;
+    private final Map<Character, boolean[]> glyphs = new LinkedHashMap<>();
+    private final int[] glyphIndex = new int[128];
+    private final float[] glyphUv = new float[128 * 4];
+    private final Map<String, float[]> geometryCache = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private final int projectionLoc;
+    private final int colorLoc;
+    private final int atlasLoc;
+    private final Matrix4f projection = new Matrix4f();
+    private FloatBuffer vertices = MemoryUtil.memAllocFloat(1024 * FLOATS_PER_GLYPH);
 
     public TextRenderer() {
         shader = new Shader("shaders/text.vert", "shaders/text.frag");
+        projectionLoc = shader.getUniformLocation("projection");
+        colorLoc = shader.getUniformLocation("color");
+        atlasLoc = shader.getUniformLocation("atlas");
+        buildFont();
+        atlas = buildAtlas();
         vao = GL30.glGenVertexArrays();
         vbo = GL15.glGenBuffers();
-        buildFont();
+        GL30.glBindVertexArray(vao);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vbo);
+        GL20.glVertexAttribPointer(0, 2, GL11.GL_FLOAT, false, FLOATS_PER_VERTEX * Float.BYTES, 0);
+        GL20.glVertexAttribPointer(1, 2, GL11.GL_FLOAT, false, FLOATS_PER_VERTEX * Float.BYTES, 2 * Float.BYTES);
+        GL20.glEnableVertexAttribArray(0);
+        GL20.glEnableVertexAttribArray(1);
+        GL30.glBindVertexArray(0);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
     }
 
     private void buildFont() {
@@ -74,63 +117,163 @@ public class TextRenderer {
     }
 
     private void add(String character, String[] pattern) {
-        boolean[] data = new boolean[5 * 7];
-        for (int y = 0; y < 7; y++) {
-            for (int x = 0; x < 5; x++) {
-                data[y * 5 + x] = pattern[y].charAt(x) != ' ';
+        boolean[] data = new boolean[GLYPH_WIDTH * GLYPH_HEIGHT];
+        for (int y = 0; y < GLYPH_HEIGHT; y++) {
+            for (int x = 0; x < GLYPH_WIDTH; x++) {
+                data[y * GLYPH_WIDTH + x] = pattern[y].charAt(x) != ' ';
             }
         }
         glyphs.put(character.charAt(0), data);
     }
 
-    public void drawText(String text, float x, float y, float scale, int windowWidth, int windowHeight) {
-        shader.bind();
-        Matrix4f proj = new Matrix4f().ortho(0, windowWidth, windowHeight, 0, -1, 1);
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            FloatBuffer fb = stack.mallocFloat(16);
-            proj.get(fb);
-            int projLoc = GL20.glGetUniformLocation(shader.getProgramId(), "projection");
-            GL20.glUniformMatrix4fv(projLoc, false, fb);
+    private int buildAtlas() {
+        int rows = (glyphs.size() + ATLAS_COLUMNS - 1) / ATLAS_COLUMNS;
+        int width = ATLAS_COLUMNS * CELL_WIDTH;
+        int height = rows * CELL_HEIGHT;
+        ByteBuffer pixels = MemoryUtil.memCalloc(width * height);
+        int index = 0;
+        int space = 0;
+        for (Map.Entry<Character, boolean[]> entry : glyphs.entrySet()) {
+            int cellX = (index % ATLAS_COLUMNS) * CELL_WIDTH;
+            int cellY = (index / ATLAS_COLUMNS) * CELL_HEIGHT;
+            boolean[] glyph = entry.getValue();
+            for (int y = 0; y < GLYPH_HEIGHT; y++) {
+                for (int x = 0; x < GLYPH_WIDTH; x++) {
+                    if (glyph[y * GLYPH_WIDTH + x]) pixels.put((cellY + y) * width + cellX + x, (byte) 0xFF);
+                }
+            }
+            char c = entry.getKey();
+            glyphIndex[c] = index;
+            glyphUv[index * 4] = (float) cellX / width;
+            glyphUv[index * 4 + 1] = (float) cellY / height;
+            glyphUv[index * 4 + 2] = (float) (cellX + GLYPH_WIDTH) / width;
+            glyphUv[index * 4 + 3] = (float) (cellY + GLYPH_HEIGHT) / height;
+            if (c == ' ') space = index;
+            index++;
+        }
+        for (int c = 0; c < glyphIndex.length; c++) {
+            if (!glyphs.containsKey((char) c)) glyphIndex[c] = space;
         }
-        int colorLoc = GL20.glGetUniformLocation(shader.getProgramId(), "color");
-        GL20.glUniform3f(colorLoc, 1f, 1f, 1f);
 
-        GL30.glBindVertexArray(vao);
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vbo);
-        GL20.glEnableVertexAttribArray(0);
+        int texture = GL11.glGenTextures();
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, texture);
+        GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1);
+        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL30.GL_R8, width, height, 0, GL11.GL_RED, GL11.GL_UNSIGNED_BYTE, pixels);
+        GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 4);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL13.GL_CLAMP_TO_EDGE);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL13.GL_CLAMP_TO_EDGE);
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+        MemoryUtil.memFree(pixels);
+        return texture;
+    }
 
-        float cx = x;
-        float cy = y;
+    /** Queues {@code text} for this frame's {@link #flush}; one glyph pixel covers {@code scale} screen pixels. */
+    public void drawText(String text, float x, float y, float scale) {
+        float[] geometry = geometryCache.get(text);
+        if (geometry == null) {
+            geometry = buildGeometry(text);
+            geometryCache.put(text, geometry);
+        }
+        ensureRemaining(geometry.length);
+        for (int i = 0; i < geometry.length; i += FLOATS_PER_VERTEX) {
+            vertices.put(x + geometry[i] * scale).put(y + geometry[i + 1] * scale)
+                    .put(geometry[i + 2]).put(geometry[i + 3]);
+        }
+    }
+
+    /**
+     * Queues text that changes from frame to frame, typically a reused {@link StringBuilder}. Its quads go
+     * straight into this frame's buffer, bypassing the cache, so nothing is allocated.
+     */
+    public void drawText(CharSequence text, float x, float y, float scale) {
+        ensureRemaining(text.length() * FLOATS_PER_GLYPH);
+        float y1 = y + GLYPH_HEIGHT * scale;
         for (int i = 0; i < text.length(); i++) {
-            char c = Character.toUpperCase(text.charAt(i));
-            boolean[] glyph = glyphs.getOrDefault(c, glyphs.get(' '));
-            FloatBuffer buffer = BufferUtils.createFloatBuffer(6 * 2 * 5 * 7);
-            for (int py = 0; py < 7; py++) {
-                for (int px = 0; px < 5; px++) {
-                    if (!glyph[py * 5 + px]) continue;
-                    float x0 = cx + px * scale;
-                    float y0 = cy + py * scale;
-                    float x1 = x0 + scale;
-                    float y1 = y0 + scale;
-                    buffer.put(new float[]{x0, y0, x1, y0, x1, y1});
-                    buffer.put(new float[]{x0, y0, x1, y1, x0, y1});
-                }
-            }
-            buffer.flip();
-            GL15.glBufferData(GL15.GL_ARRAY_BUFFER, buffer, GL15.GL_STREAM_DRAW);
-            GL20.glVertexAttribPointer(0, 2, GL11.GL_FLOAT, false, 2 * Float.BYTES, 0);
-            int verts = buffer.limit() / 2;
-            GL11.glDrawArrays(GL11.GL_TRIANGLES, 0, verts);
-            cx += 6 * scale;
+            int glyph = glyphOf(text.charAt(i));
+            float u0 = glyphUv[glyph * 4];
+            float v0 = glyphUv[glyph * 4 + 1];
+            float u1 = glyphUv[glyph * 4 + 2];
+            float v1 = glyphUv[glyph * 4 + 3];
+            float x0 = x + i * ADVANCE * scale;
+            float x1 = x0 + GLYPH_WIDTH * scale;
+            vertices.put(x0).put(y).put(u0).put(v0);
+            vertices.put(x1).put(y).put(u1).put(v0);
+            vertices.put(x1).put(y1).put(u1).put(v1);
+            vertices.put(x0).put(y).put(u0).put(v0);
+            vertices.put(x1).put(y1).put(u1).put(v1);
+            vertices.put(x0).put(y1).put(u0).put(v1);
+        }
+    }
+
+    private void ensureRemaining(int floats) {
+        if (vertices.remaining() < floats) {
+            vertices = MemoryUtil.memRealloc(vertices, Math.max(vertices.capacity() * 2, vertices.position() + floats));
+        }
+    }
+
+    private int glyphOf(char c) {
+        c = Character.toUpperCase(c);
+        return glyphIndex[c < glyphIndex.length ? c : ' '];
+    }
+
+    /** Quads for the string at the origin in glyph pixel units, with atlas coordinates. */
+    private float[] buildGeometry(String text) {
+        float[] geometry = new float[text.length() * FLOATS_PER_GLYPH];
+        int o = 0;
+        for (int i = 0; i < text.length(); i++) {
+            int glyph = glyphOf(text.charAt(i));
+            float u0 = glyphUv[glyph * 4];
+            float v0 = glyphUv[glyph * 4 + 1];
+            float u1 = glyphUv[glyph * 4 + 2];
+            float v1 = glyphUv[glyph * 4 + 3];
+            float x0 = i * ADVANCE;
+            float x1 = x0 + GLYPH_WIDTH;
+            o = vertex(geometry, o, x0, 0, u0, v0);
+            o = vertex(geometry, o, x1, 0, u1, v0);
+            o = vertex(geometry, o, x1, GLYPH_HEIGHT, u1, v1);
+            o = vertex(geometry, o, x0, 0, u0, v0);
+            o = vertex(geometry, o, x1, GLYPH_HEIGHT, u1, v1);
+            o = vertex(geometry, o, x0, GLYPH_HEIGHT, u0, v1);
         }
+        return geometry;
+    }
 
-        GL20.glDisableVertexAttribArray(0);
+    private static int vertex(float[] out, int o, float x, float y, float u, float v) {
+        out[o] = x;
+        out[o + 1] = y;
+        out[o + 2] = u;
+        out[o + 3] = v;
+        return o + FLOATS_PER_VERTEX;
+    }
+
+    /** Draws everything queued since the last flush in one call. */
+    public void flush(int windowWidth, int windowHeight) {
+        int vertexCount = vertices.position() / FLOATS_PER_VERTEX;
+        if (vertexCount == 0) return;
+        vertices.flip();
+        shader.bind();
+        shader.setMatrix4f(projectionLoc, projection.setOrtho(0, windowWidth, windowHeight, 0, -1, 1));
+        shader.setVector3f(colorLoc, 1f, 1f, 1f);
+        GL20.glUniform1i(atlasLoc, 0);
+        GL13.glActiveTexture(GL13.GL_TEXTURE0);
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, atlas);
+        GL30.glBindVertexArray(vao);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vbo);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, vertices, GL15.GL_STREAM_DRAW);
+        GL11.glDrawArrays(GL11.GL_TRIANGLES, 0, vertexCount);
         GL30.glBindVertexArray(0);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, 0);
         shader.unbind();
+        vertices.clear();
     }
 
     public void destroy() {
+        MemoryUtil.memFree(vertices);
         shader.destroy();
+        GL11.glDeleteTextures(atlas);
         GL15.glDeleteBuffers(vbo);
         GL30.glDeleteVertexArrays(vao);
     }
@@ -4,11 +4,14 @@ import org.lwjgl.glfw.GLFW;
 import org.lwjgl.glfw.GLFWErrorCallback;
 import org.lwjgl.opengl.GL;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.system.MemoryStack;
 import org.lwjgl.system.MemoryUtil;
 
+import java.nio.IntBuffer;
+
 public class Window {
-    private final int width;
-    private final int height;
+    private int width;
+    private int height;
     private final String title;
     private long handle;
     private boolean resized;
@@ -34,7 +37,22 @@ public class Window {
         }
         GLFW.glfwMakeContextCurrent(handle);
         GLFW.glfwSwapInterval(1);
-        GLFW.glfwSetFramebufferSizeCallback(handle, (win, w, h) -> resized = true);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer w = stack.mallocInt(1);
+            IntBuffer h = stack.mallocInt(1);
+            GLFW.glfwGetFramebufferSize(handle, w, h);
+            if (w.get(0) > 0 && h.get(0) > 0) {
+                width = w.get(0);
+                height = h.get(0);
+            }
+        }
+        GLFW.glfwSetFramebufferSizeCallback(handle, (win, w, h) -> {
+            // Minimized windows report 0x0; keep the last real size so aspect ratios stay finite.
+            if (w <= 0 || h <= 0) return;
+            width = w;
+            height = h;
+            resized = true;
+        });
         GL.createCapabilities();
         GL11.glEnable(GL11.GL_DEPTH_TEST);
         GL11.glEnable(GL11.GL_CULL_FACE);
@@ -54,16 +72,13 @@ public class Window {
         GLFW.glfwSwapBuffers(handle);
     }
 
+    /** Framebuffer width in pixels, tracked from the resize callback. */
     public int getWidth() {
-        int[] w = new int[1];
-        GLFW.glfwGetFramebufferSize(handle, w, new int[1]);
-        return w[0] > 0 ? w[0] : width;
+        return width;
     }
 
     public int getHeight() {
-        int[] h = new int[1];
-        GLFW.glfwGetFramebufferSize(handle, new int[1], h);
-        return h[0] > 0 ? h[0] : height;
+        return height;
     }
 
     public long getHandle() {
@@ -9,6 +9,9 @@ public class Input {
     private static final boolean[] pressed = new boolean[LAST_KEY + 1];
     private static final boolean[] mouseButtons = new boolean[8];
     private static final boolean[] mousePressed = new boolean[8];
+    // Out-parameters for glfwGetCursorPos, reused so polling allocates nothing.
+    private static final double[] cursorX = new double[1];
+    private static final double[] cursorY = new double[1];
     private static double mouseX, mouseY, lastMouseX, lastMouseY;
     private static double deltaX, deltaY;
     private static boolean firstMouse = true;
@@ -24,11 +27,9 @@ public class Input {
             mousePressed[i] = down && !mouseButtons[i];
             mouseButtons[i] = down;
         }
-        double[] mx = new double[1];
-        double[] my = new double[1];
-        GLFW.glfwGetCursorPos(window, mx, my);
-        mouseX = mx[0];
-        mouseY = my[0];
+        GLFW.glfwGetCursorPos(window, cursorX, cursorY);
+        mouseX = cursorX[0];
+        mouseY = cursorY[0];
         if (firstMouse) {
             lastMouseX = mouseX;
             lastMouseY = mouseY;
@@ -41,11 +42,9 @@ public class Input {
     }
 
     public static void resetMouse(long window) {
-        double[] mx = new double[1];
-        double[] my = new double[1];
-        GLFW.glfwGetCursorPos(window, mx, my);
-        lastMouseX = mx[0];
-        lastMouseY = my[0];
+        GLFW.glfwGetCursorPos(window, cursorX, cursorY);
+        lastMouseX = cursorX[0];
+        lastMouseY = cursorY[0];
         deltaX = 0;
         deltaY = 0;
         firstMouse = true;
@@ -0,0 +1,9 @@
+package com.glowingmemory.physics;
+
+/**
+ * Read-only view of which world cells block movement. Implementations must answer from what is already in
+ * memory, never by loading or generating chunks, since the solver asks about every cell a body sweeps through.
+ */
+public interface BlockView {
+    boolean isSolid(int x, int y, int z);
+}
@@ -0,0 +1,46 @@
+package com.glowingmemory.physics;
+
+import org.joml.Vector3f;
+
+/**
+ * An axis-aligned box centred on {@link #getPosition()} that {@link CollisionSolver} moves by its velocity.
+ * The position vector is used as given, so a body can drive an existing one such as the camera's.
+ */
+public class Body {
+    final Vector3f position;
+    final Vector3f velocity = new Vector3f();
+    final float halfWidth;
+    final float halfHeight;
+    final float stepHeight;
+    boolean onGround;
+    boolean collidedHorizontally;
+
+    public Body(Vector3f position, float width, float height, float stepHeight) {
+        this.position = position;
+        this.halfWidth = width / 2f;
+        this.halfHeight = height / 2f;
+        this.stepHeight = stepHeight;
+    }
+
+    public Vector3f getPosition() {
+        return position;
+    }
+
+    public Vector3f getVelocity() {
+        return velocity;
+    }
+
+    public float getMinY() {
+        return position.y - halfHeight;
+    }
+
+    /** Whether the last move ended with the body standing on a solid cell. */
+    public boolean isOnGround() {
+        return onGround;
+    }
+
+    /** Whether the last move was stopped along X or Z. */
+    public boolean isCollidedHorizontally() {
+        return collidedHorizontally;
+    }
+}
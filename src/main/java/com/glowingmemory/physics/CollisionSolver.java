@@ -0,0 +1,148 @@
+package com.glowingmemory.physics;
+
+import org.joml.Vector3f;
+
+/**
+ * Moves {@link Body bodies} through a {@link BlockView} without letting them pass through solid cells.
+ * <p>
+ * Each axis is swept on its own: the layers of cells between the box's leading face and its destination are
+ * checked nearest first, and the move stops at the face of the first solid one, its time of impact along that
+ * axis. Y goes first so a landing body is grounded before it slides, then X and Z. A blocked grounded body
+ * retries its horizontal move raised by its step height and keeps whichever got further. Long moves are split
+ * into substeps so each sweep covers only a few layers, however fast the body falls. Cells the box already
+ * overlaps are ignored, so a body caught inside a block (one placed on it, say) can walk out of it.
+ * <p>
+ * Nothing is allocated per move; a solver holds no state besides its view and can serve any number of bodies.
+ */
+public class CollisionSolver {
+    private static final float MAX_SUBSTEP = 0.5f;
+    private static final int MAX_SUBSTEPS = 64;
+    // Faces closer than this count as touching, so rounding never snags a box on the cells beside it.
+    private static final float EPSILON = 1e-3f;
+    private static final int X = 0;
+    private static final int Y = 1;
+    private static final int Z = 2;
+
+    private final BlockView view;
+
+    public CollisionSolver(BlockView view) {
+        this.view = view;
+    }
+
+    /** Advances {@code body} by its velocity over {@code dt} seconds, zeroing velocity along blocked axes. */
+    public void move(Body body, float dt) {
+        Vector3f velocity = body.velocity;
+        float dx = velocity.x * dt;
+        float dy = velocity.y * dt;
+        float dz = velocity.z * dt;
+        float longest = Math.max(Math.abs(dx), Math.max(Math.abs(dy), Math.abs(dz)));
+        int steps = Math.min(MAX_SUBSTEPS, Math.max(1, (int) Math.ceil(longest / MAX_SUBSTEP)));
+        body.onGround = false;
+        body.collidedHorizontally = false;
+        for (int i = 0; i < steps; i++) {
+            step(body, velocity.x == 0 ? 0 : dx / steps, velocity.y == 0 ? 0 : dy / steps,
+                    velocity.z == 0 ? 0 : dz / steps);
+        }
+    }
+
+    private void step(Body body, float dx, float dy, float dz) {
+        Vector3f position = body.position;
+        float movedY = sweep(body, Y, dy);
+        position.y += movedY;
+        if (movedY != dy) {
+            if (dy < 0) body.onGround = true;
+            body.velocity.y = 0;
+        }
+
+        float startX = position.x;
+        float startZ = position.z;
+        float movedX = sweep(body, X, dx);
+        position.x += movedX;
+        float movedZ = sweep(body, Z, dz);
+        position.z += movedZ;
+        if (movedX == dx && movedZ == dz) return;
+
+        if (body.onGround && body.stepHeight > 0) {
+            float blockedX = position.x;
+            float blockedY = position.y;
+            float blockedZ = position.z;
+            position.x = startX;
+            position.z = startZ;
+            float raised = sweep(body, Y, body.stepHeight);
+            position.y += raised;
+            float stepX = sweep(body, X, dx);
+            position.x += stepX;
+            float stepZ = sweep(body, Z, dz);
+            position.z += stepZ;
+            position.y += sweep(body, Y, -raised);
+            if (stepX * stepX + stepZ * stepZ > movedX * movedX + movedZ * movedZ) {
+                movedX = stepX;
+                movedZ = stepZ;
+            } else {
+                position.set(blockedX, blockedY, blockedZ);
+            }
+        }
+        if (movedX != dx) {
+            body.velocity.x = 0;
+            body.collidedHorizontally = true;
+        }
+        if (movedZ != dz) {
+            body.velocity.z = 0;
+            body.collidedHorizontally = true;
+        }
+    }
+
+    /** How far the body can move along {@code axis}, up to {@code delta}, before touching a solid cell. */
+    private float sweep(Body body, int axis, float delta) {
+        if (delta == 0) return 0;
+        Vector3f position = body.position;
+        float minX = position.x - body.halfWidth;
+        float maxX = position.x + body.halfWidth;
+        float minY = position.y - body.halfHeight;
+        float maxY = position.y + body.halfHeight;
+        float minZ = position.z - body.halfWidth;
+        float maxZ = position.z + body.halfWidth;
+        // Cells covered across the other two axes, shrunk so that merely touching a face does not count.
+        int x0 = floor(minX + EPSILON);
+        int x1 = floor(maxX - EPSILON);
+        int y0 = floor(minY + EPSILON);
+        int y1 = floor(maxY - EPSILON);
+        int z0 = floor(minZ + EPSILON);
+        int z1 = floor(maxZ - EPSILON);
+
+        float lead = axis == X ? (delta > 0 ? maxX : minX)
+                : axis == Y ? (delta > 0 ? maxY : minY)
+                : (delta > 0 ? maxZ : minZ);
+        int direction = delta > 0 ? 1 : -1;
+        int last = floor(lead + delta);
+        for (int layer = floor(lead); ; layer += direction) {
+            float distance = (delta > 0 ? layer : layer + 1) - lead;
+            boolean ahead = delta > 0 ? distance >= -EPSILON : distance <= EPSILON;
+            if (ahead && layerSolid(axis, layer, x0, x1, y0, y1, z0, z1)) {
+                return delta > 0 ? Math.max(distance, 0) : Math.min(distance, 0);
+            }
+            if (layer == last) return delta;
+        }
+    }
+
+    private boolean layerSolid(int axis, int layer, int x0, int x1, int y0, int y1, int z0, int z1) {
+        if (axis == X) return anySolid(layer, layer, y0, y1, z0, z1);
+        if (axis == Y) return anySolid(x0, x1, layer, layer, z0, z1);
+        return anySolid(x0, x1, y0, y1, layer, layer);
+    }
+
+    private boolean anySolid(int x0, int x1, int y0, int y1, int z0, int z1) {
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                for (int z = z0; z <= z1; z++) {
+                    if (view.isSolid(x, y, z)) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int floor(float value) {
+        return (int) Math.floor(value);
+    }
+}
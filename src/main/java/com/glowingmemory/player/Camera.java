@@ -8,16 +8,16 @@ public class Camera {
     private float pitch = 20f;
     private float yaw = -90f;
     private float fov = 70f;
+    private final Vector3f front = new Vector3f();
 
-    public Matrix4f getViewMatrix() {
-        Vector3f front = getFront();
-        Vector3f center = new Vector3f(position).add(front);
-        Vector3f up = new Vector3f(0, 1, 0);
-        return new Matrix4f().lookAt(position, center, up);
+    public Matrix4f getViewMatrix(Matrix4f dest) {
+        getFront(front);
+        return dest.setLookAt(position.x, position.y, position.z,
+                position.x + front.x, position.y + front.y, position.z + front.z, 0, 1, 0);
     }
 
-    public Matrix4f getProjectionMatrix(float aspect) {
-        return new Matrix4f().perspective((float) Math.toRadians(fov), aspect, 0.1f, 512f);
+    public Matrix4f getProjectionMatrix(float aspect, Matrix4f dest) {
+        return dest.setPerspective((float) Math.toRadians(fov), aspect, 0.1f, 512f);
     }
 
     public Vector3f getPosition() {
@@ -33,10 +33,14 @@ public class Camera {
     }
 
     public Vector3f getFront() {
+        return getFront(new Vector3f());
+    }
+
+    public Vector3f getFront(Vector3f dest) {
         float x = (float) (Math.cos(Math.toRadians(yaw)) * Math.cos(Math.toRadians(pitch)));
         float y = (float) Math.sin(Math.toRadians(pitch));
         float z = (float) (Math.sin(Math.toRadians(yaw)) * Math.cos(Math.toRadians(pitch)));
-        return new Vector3f(x, y, z).normalize();
+        return dest.set(x, y, z).normalize();
     }
 
     public void setYaw(float yaw) {
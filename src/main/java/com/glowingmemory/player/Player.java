@@ -2,6 +2,8 @@ package com.glowingmemory.player;
 
 import com.glowingmemory.gfx.Window;
 import com.glowingmemory.input.Input;
+import com.glowingmemory.physics.Body;
+import com.glowingmemory.physics.CollisionSolver;
 import com.glowingmemory.world.Block;
 import com.glowingmemory.world.Raycaster;
 import com.glowingmemory.world.World;
@@ -11,8 +13,12 @@ import org.lwjgl.glfw.GLFW;
 public class Player {
     private final Camera camera;
     private final World world;
-    private final Vector3f velocity = new Vector3f();
-    private boolean onGround = false;
+    private final Body body;
+    private final CollisionSolver solver;
+    private final Vector3f front = new Vector3f();
+    private final Vector3f right = new Vector3f();
+    private final Vector3f move = new Vector3f();
+    private final Raycaster.RayHit ray = new Raycaster.RayHit();
     private int selectedSlot = 1;
     private boolean menuOpen = false;
     private boolean debugOpen = false;
@@ -21,10 +27,15 @@ public class Player {
     private static final float SPRINT = 11f;
     private static final float GRAVITY = -28f;
     private static final float JUMP = 9f;
+    private static final float WIDTH = 0.6f;
+    private static final float HEIGHT = 1.5f;
+    private static final float STEP_HEIGHT = 0.6f;
 
     public Player(Camera camera, World world) {
         this.camera = camera;
         this.world = world;
+        this.body = new Body(camera.getPosition(), WIDTH, HEIGHT, STEP_HEIGHT);
+        this.solver = new CollisionSolver(world);
     }
 
     public void init(Window window) {
@@ -47,13 +58,14 @@ public class Player {
     }
 
     private void handleMovement(float dt, Window window) {
+        Vector3f velocity = body.getVelocity();
         if (menuOpen) {
             velocity.zero();
             return;
         }
-        Vector3f front = camera.getFront();
-        Vector3f right = new Vector3f(front).cross(0, 1, 0).normalize();
-        Vector3f move = new Vector3f();
+        camera.getFront(front);
+        front.cross(0, 1, 0, right).normalize();
+        move.zero();
         float speed = Input.isKeyDown(GLFW.GLFW_KEY_LEFT_SHIFT) ? SPRINT : SPEED;
 
         if (Input.isKeyDown(GLFW.GLFW_KEY_W)) move.add(front.x, 0, front.z);
@@ -67,23 +79,10 @@ public class Player {
         velocity.z = move.z;
 
         velocity.y += GRAVITY * dt;
-        if (Input.isKeyPressed(GLFW.GLFW_KEY_SPACE) && onGround) {
+        if (Input.isKeyPressed(GLFW.GLFW_KEY_SPACE) && body.isOnGround()) {
             velocity.y = JUMP;
-            onGround = false;
         }
-        Vector3f position = camera.getPosition();
-        Vector3f newPos = new Vector3f(position);
-        newPos.add(velocity.x * dt, 0, velocity.z * dt);
-        newPos = world.resolveCollision(position, new Vector3f(0.6f, 1.5f, 0.6f), newPos);
-        position.set(newPos);
-
-        newPos = new Vector3f(position).add(0, velocity.y * dt, 0);
-        Vector3f verticalResolved = world.resolveCollision(position, new Vector3f(0.6f, 1.5f, 0.6f), newPos);
-        if (verticalResolved.y != newPos.y) {
-            if (velocity.y < 0) onGround = true;
-            velocity.y = 0;
-        }
-        position.set(verticalResolved);
+        solver.move(body, dt);
     }
 
     private void handleInteractions(Window window) {
@@ -115,16 +114,19 @@ public class Player {
         if (Input.isKeyPressed(GLFW.GLFW_KEY_F)) {
             world.toggleWireframe();
         }
+        if (Input.isKeyPressed(GLFW.GLFW_KEY_G)) {
+            world.toggleMeshingMode();
+        }
 
-        Raycaster.RayResult ray = Raycaster.raycast(camera.getPosition(), camera.getFront(), world, 6f);
-        if (ray != null) {
+        camera.getFront(front);
+        if (Raycaster.raycast(camera.getPosition(), front, world, 6f, ray)) {
             if (Input.isMousePressed(GLFW.GLFW_MOUSE_BUTTON_LEFT)) {
-                world.setBlock(ray.hit, Block.AIR);
+                world.setBlock(ray.x, ray.y, ray.z, Block.AIR);
             }
             if (Input.isMousePressed(GLFW.GLFW_MOUSE_BUTTON_RIGHT)) {
-                if (ray.normal != null) {
-                    int blockId = Math.min(selectedSlot, Block.values().length - 1);
-                    world.setBlock(ray.hit.add(ray.normal, new Vector3f()), Block.values()[blockId]);
+                if (ray.hasNormal()) {
+                    int blockId = Math.min(selectedSlot, Block.count() - 1);
+                    world.setBlock(ray.x + ray.normalX, ray.y + ray.normalY, ray.z + ray.normalZ, Block.byId(blockId));
                 }
             }
         }
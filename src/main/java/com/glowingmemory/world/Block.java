@@ -9,21 +9,41 @@ public enum Block {
     STONE(true, new Vector3f(0.6f, 0.6f, 0.6f)),
     SAND(true, new Vector3f(0.9f, 0.85f, 0.6f)),
     WOOD(true, new Vector3f(0.55f, 0.35f, 0.2f)),
-    LEAVES(true, new Vector3f(0.2f, 0.5f, 0.2f)),
-    WATER(true, new Vector3f(0.2f, 0.4f, 0.8f)),
-    TALL_GRASS(false, new Vector3f(0.35f, 0.75f, 0.28f), 0.65f);
+    LEAVES(true, new Vector3f(0.2f, 0.5f, 0.2f), 1f, 1, 0),
+    WATER(true, new Vector3f(0.2f, 0.4f, 0.8f), 1f, 2, 0),
+    TALL_GRASS(false, new Vector3f(0.35f, 0.75f, 0.28f), 0.65f),
+    LAMP(true, new Vector3f(1.0f, 0.85f, 0.55f), 1f, 15, 15);
+
+    private static final Block[] VALUES = values();
 
     public final boolean solid;
     public final Vector3f color;
     public final float renderHeight;
+    /** Light lost when passing through the block on top of the usual one per step; 15 blocks light entirely. */
+    public final int lightOpacity;
+    public final int lightEmission;
 
     Block(boolean solid, Vector3f color) {
         this(solid, color, 1f);
     }
 
     Block(boolean solid, Vector3f color, float renderHeight) {
+        this(solid, color, renderHeight, solid ? 15 : 0, 0);
+    }
+
+    Block(boolean solid, Vector3f color, float renderHeight, int lightOpacity, int lightEmission) {
         this.solid = solid;
         this.color = color;
         this.renderHeight = renderHeight;
+        this.lightOpacity = lightOpacity;
+        this.lightEmission = lightEmission;
+    }
+
+    public static Block byId(int id) {
+        return VALUES[id];
+    }
+
+    public static int count() {
+        return VALUES.length;
     }
 }
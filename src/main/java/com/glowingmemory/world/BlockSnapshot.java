@@ -0,0 +1,54 @@
+package com.glowingmemory.world;
+
+/**
+ * Frozen copy of the block ids in a rectangle of chunks, so queries such as {@link Raycaster#raycastAll} can
+ * run on other threads while the world keeps changing. Chunks that were not loaded when it was taken read as
+ * null, like unloaded chunks in {@link World#getBlock}.
+ */
+public final class BlockSnapshot implements Raycaster.BlockSource {
+    private final int minChunkX;
+    private final int minChunkZ;
+    private final int width;
+    private final int depth;
+    private final byte[][] ids;
+
+    private BlockSnapshot(int minChunkX, int minChunkZ, int width, int depth, byte[][] ids) {
+        this.minChunkX = minChunkX;
+        this.minChunkZ = minChunkZ;
+        this.width = width;
+        this.depth = depth;
+        this.ids = ids;
+    }
+
+    /** Copies the chunks of {@code chunks} covering blocks {@code minX..maxX}, {@code minZ..maxZ}; main thread only. */
+    public static BlockSnapshot capture(ChunkMap chunks, int minX, int minZ, int maxX, int maxZ) {
+        int minChunkX = Math.floorDiv(minX, Chunk.SIZE);
+        int minChunkZ = Math.floorDiv(minZ, Chunk.SIZE);
+        int width = Math.floorDiv(maxX, Chunk.SIZE) - minChunkX + 1;
+        int depth = Math.floorDiv(maxZ, Chunk.SIZE) - minChunkZ + 1;
+        byte[][] ids = new byte[width * depth][];
+        for (int cz = 0; cz < depth; cz++) {
+            for (int cx = 0; cx < width; cx++) {
+                Chunk chunk = chunks.get(minChunkX + cx, minChunkZ + cz);
+                if (chunk == null) continue;
+                byte[] copy = new byte[Chunk.VOLUME];
+                chunk.copyBlockIds(copy);
+                ids[cz * width + cx] = copy;
+            }
+        }
+        return new BlockSnapshot(minChunkX, minChunkZ, width, depth, ids);
+    }
+
+    @Override
+    public Block getBlock(int x, int y, int z) {
+        int cx = Math.floorDiv(x, Chunk.SIZE) - minChunkX;
+        int cz = Math.floorDiv(z, Chunk.SIZE) - minChunkZ;
+        if (cx < 0 || cz < 0 || cx >= width || cz >= depth) return null;
+        byte[] chunk = ids[cz * width + cx];
+        if (chunk == null) return null;
+        if (y < 0 || y >= Chunk.HEIGHT) return Block.AIR;
+        int lx = Math.floorMod(x, Chunk.SIZE);
+        int lz = Math.floorMod(z, Chunk.SIZE);
+        return Block.byId(chunk[(y * Chunk.SIZE + lz) * Chunk.SIZE + lx]);
+    }
+}
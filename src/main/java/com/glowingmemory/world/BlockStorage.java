@@ -0,0 +1,187 @@
+package com.glowingmemory.world;
+
+import java.util.Arrays;
+
+/**
+ * Paletted block ids for one 16x16x16 section. A section holding a single block type stores no cell
+ * data at all; otherwise cells index into a palette through 4-bit (up to 16 types) or 8-bit entries.
+ * Cells are ordered y, z, x like the old flat chunk array. Id 0 is air; non-air cells are counted so
+ * empty sections can be skipped without scanning them.
+ */
+public class BlockStorage {
+    public static final int SIZE = 16;
+    public static final int VOLUME = SIZE * SIZE * SIZE;
+
+    private byte[] palette = new byte[1];
+    private int paletteSize = 1;
+    private byte[] data;
+    private int bits;
+    private int nonAirCount;
+
+    public BlockStorage(int id) {
+        palette[0] = (byte) id;
+        nonAirCount = id != 0 ? VOLUME : 0;
+    }
+
+    public int get(int index) {
+        if (bits == 0) return palette[0] & 0xFF;
+        return palette[paletteIndex(index)] & 0xFF;
+    }
+
+    public void set(int index, int id) {
+        int old = get(index);
+        if (old == id) return;
+        if (old == 0) nonAirCount++;
+        else if (id == 0) nonAirCount--;
+        int paletteIndex = indexOf(id);
+        if (paletteIndex < 0) {
+            paletteIndex = addToPalette(id);
+        }
+        if (bits == 0) resize(4);
+        writeIndex(index, paletteIndex);
+    }
+
+    public void fill(int id) {
+        palette = new byte[]{(byte) id};
+        paletteSize = 1;
+        data = null;
+        bits = 0;
+        nonAirCount = id != 0 ? VOLUME : 0;
+    }
+
+    public boolean isUniform() {
+        return bits == 0;
+    }
+
+    /** The single id of a uniform section, or -1 if the section holds more than one block type. */
+    public int getUniformId() {
+        return bits == 0 ? palette[0] & 0xFF : -1;
+    }
+
+    public int getNonAirCount() {
+        return nonAirCount;
+    }
+
+    public void copyTo(byte[] out, int offset) {
+        if (bits == 0) {
+            Arrays.fill(out, offset, offset + VOLUME, palette[0]);
+            return;
+        }
+        for (int i = 0; i < VOLUME; i++) {
+            out[offset + i] = palette[paletteIndex(i)];
+        }
+    }
+
+    /** Like {@link #copyTo(byte[], int)}, with z rows {@code rowStride} and y layers {@code layerStride} apart. */
+    public void copyTo(byte[] out, int offset, int rowStride, int layerStride) {
+        for (int y = 0; y < SIZE; y++) {
+            for (int z = 0; z < SIZE; z++) {
+                int row = offset + y * layerStride + z * rowStride;
+                if (bits == 0) {
+                    Arrays.fill(out, row, row + SIZE, palette[0]);
+                    continue;
+                }
+                int cell = (y * SIZE + z) * SIZE;
+                for (int x = 0; x < SIZE; x++) {
+                    out[row + x] = palette[paletteIndex(cell + x)];
+                }
+            }
+        }
+    }
+
+    public void copyFrom(byte[] in, int offset) {
+        byte[] newPalette = new byte[16];
+        int newSize = 0;
+        boolean[] seen = new boolean[256];
+        int count = 0;
+        for (int i = 0; i < VOLUME; i++) {
+            int id = in[offset + i] & 0xFF;
+            if (id != 0) count++;
+            if (!seen[id]) {
+                seen[id] = true;
+                if (newSize == newPalette.length) newPalette = Arrays.copyOf(newPalette, newSize * 2);
+                newPalette[newSize++] = (byte) id;
+            }
+        }
+        palette = newPalette;
+        paletteSize = newSize;
+        nonAirCount = count;
+        if (newSize == 1) {
+            data = null;
+            bits = 0;
+            return;
+        }
+        bits = newSize <= 16 ? 4 : 8;
+        data = new byte[VOLUME * bits / 8];
+        for (int i = 0; i < VOLUME; i++) {
+            writeIndex(i, indexOf(in[offset + i] & 0xFF));
+        }
+    }
+
+    /** Makes this section an exact copy of {@code other} without decoding it, reusing its arrays where they fit. */
+    public void copyFrom(BlockStorage other) {
+        if (palette.length < other.paletteSize) palette = new byte[other.palette.length];
+        System.arraycopy(other.palette, 0, palette, 0, other.paletteSize);
+        paletteSize = other.paletteSize;
+        bits = other.bits;
+        nonAirCount = other.nonAirCount;
+        if (other.data == null) {
+            data = null;
+            return;
+        }
+        if (data == null || data.length != other.data.length) data = new byte[other.data.length];
+        System.arraycopy(other.data, 0, data, 0, data.length);
+    }
+
+    public int getMemoryBytes() {
+        return 32 + palette.length + (data != null ? data.length : 0);
+    }
+
+    private int paletteIndex(int index) {
+        if (bits == 8) return data[index] & 0xFF;
+        int packed = data[index >> 1];
+        return (index & 1) == 0 ? packed & 0x0F : (packed >> 4) & 0x0F;
+    }
+
+    private void writeIndex(int index, int paletteIndex) {
+        if (bits == 8) {
+            data[index] = (byte) paletteIndex;
+            return;
+        }
+        int i = index >> 1;
+        if ((index & 1) == 0) {
+            data[i] = (byte) ((data[i] & 0xF0) | paletteIndex);
+        } else {
+            data[i] = (byte) ((data[i] & 0x0F) | (paletteIndex << 4));
+        }
+    }
+
+    private int indexOf(int id) {
+        for (int i = 0; i < paletteSize; i++) {
+            if ((palette[i] & 0xFF) == id) return i;
+        }
+        return -1;
+    }
+
+    private int addToPalette(int id) {
+        if (paletteSize == palette.length) {
+            palette = Arrays.copyOf(palette, Math.max(4, paletteSize * 2));
+        }
+        palette[paletteSize] = (byte) id;
+        int index = paletteSize++;
+        if (bits == 4 && paletteSize > 16) resize(8);
+        return index;
+    }
+
+    private void resize(int newBits) {
+        int[] indices = new int[VOLUME];
+        if (bits != 0) {
+            for (int i = 0; i < VOLUME; i++) indices[i] = paletteIndex(i);
+        }
+        bits = newBits;
+        data = new byte[VOLUME * newBits / 8];
+        for (int i = 0; i < VOLUME; i++) {
+            writeIndex(i, indices[i]);
+        }
+    }
+}
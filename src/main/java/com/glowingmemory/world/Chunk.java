@@ -1,35 +1,275 @@
 package com.glowingmemory.world;
 
 import com.glowingmemory.world.mesh.ChunkMesh;
+import com.glowingmemory.world.mesh.MeshData;
+import com.glowingmemory.world.mesh.SectionVisibility;
+import com.glowingmemory.world.mesh.VertexFormat;
+
+import java.util.Arrays;
 
 public class Chunk {
     public static final int SIZE = 16;
     public static final int HEIGHT = 128;
+    public static final int SECTION_COUNT = HEIGHT / BlockStorage.SIZE;
+    public static final int VOLUME = SIZE * HEIGHT * SIZE;
+    public static final int ALL_SECTIONS = (1 << SECTION_COUNT) - 1;
 
     private final int chunkX;
     private final int chunkZ;
-    private final Block[] blocks;
-    private boolean dirty = true;
-    private ChunkMesh mesh;
+    private final BlockStorage[] sections = new BlockStorage[SECTION_COUNT];
+    private final ChunkMesh[] meshes = new ChunkMesh[SECTION_COUNT];
+    private final MeshData[] pendingMeshes = new MeshData[SECTION_COUNT];
+    private final int[] visibility = new int[SECTION_COUNT];
+    private final short[] heightmap = new short[SIZE * SIZE];
+    // Nibble-packed light levels indexed like the block ids; null until the chunk is lit.
+    private byte[] skyLight;
+    private byte[] blockLight;
+    private int dirtySections = ALL_SECTIONS;
+    private boolean modified;
+    // Set while light from the loaded neighbors has yet to be stitched in; the chunk is not meshed meanwhile.
+    private boolean lightPending;
+    private int lod;
 
     public Chunk(int chunkX, int chunkZ) {
         this.chunkX = chunkX;
         this.chunkZ = chunkZ;
-        this.blocks = new Block[SIZE * HEIGHT * SIZE];
-        for (int i = 0; i < blocks.length; i++) {
-            blocks[i] = Block.AIR;
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = new BlockStorage(Block.AIR.ordinal());
         }
+        Arrays.fill(visibility, SectionVisibility.ALL);
     }
 
     public Block getBlock(int x, int y, int z) {
         if (y < 0 || y >= HEIGHT || x < 0 || x >= SIZE || z < 0 || z >= SIZE) return Block.AIR;
-        return blocks[(y * SIZE + z) * SIZE + x];
+        return Block.byId(sections[y >> 4].get(((y & 15) * SIZE + z) * SIZE + x));
+    }
+
+    /** Raw id of an in-bounds cell, without the range checks of {@link #getBlock}. */
+    public int getBlockId(int x, int y, int z) {
+        return sections[y >> 4].get(((y & 15) * SIZE + z) * SIZE + x);
     }
 
     public void setBlock(int x, int y, int z, Block block) {
         if (y < 0 || y >= HEIGHT || x < 0 || x >= SIZE || z < 0 || z >= SIZE) return;
-        blocks[(y * SIZE + z) * SIZE + x] = block;
-        dirty = true;
+        sections[y >> 4].set(((y & 15) * SIZE + z) * SIZE + x, block.ordinal());
+        markBlockDirty(y);
+        int column = z * SIZE + x;
+        if (block != Block.AIR) {
+            if (y >= heightmap[column]) heightmap[column] = (short) (y + 1);
+        } else if (y + 1 == heightmap[column]) {
+            heightmap[column] = (short) scanHeight(x, y - 1, z);
+        }
+    }
+
+    /** One above the highest non-air block in the column, or 0 if the column is empty. */
+    public int getHeight(int x, int z) {
+        return heightmap[z * SIZE + x];
+    }
+
+    public int getMaxHeight() {
+        int max = 0;
+        for (short height : heightmap) {
+            max = Math.max(max, height);
+        }
+        return max;
+    }
+
+    /** Replaces the heightmap with stored values (z-major, {@code SIZE * SIZE} entries) that match the blocks. */
+    public void setHeightmap(short[] in) {
+        System.arraycopy(in, 0, heightmap, 0, heightmap.length);
+    }
+
+    /** Recomputes every column; needed after the bulk section setters, which leave the heightmap alone. */
+    public void rebuildHeightmap() {
+        for (int z = 0; z < SIZE; z++) {
+            for (int x = 0; x < SIZE; x++) {
+                heightmap[z * SIZE + x] = (short) scanHeight(x, HEIGHT - 1, z);
+            }
+        }
+    }
+
+    private int scanHeight(int x, int fromY, int z) {
+        for (int y = fromY; y >= 0; y--) {
+            BlockStorage section = sections[y >> 4];
+            if (section.getNonAirCount() == 0) {
+                y &= ~15;
+                continue;
+            }
+            if (section.get(((y & 15) * SIZE + z) * SIZE + x) != 0) return y + 1;
+        }
+        return 0;
+    }
+
+    /** Marks the section containing {@code y} dirty, plus the vertical neighbor whose faces touch it. */
+    public void markBlockDirty(int y) {
+        int section = y >> 4;
+        dirtySections |= 1 << section;
+        if ((y & 15) == 0 && section > 0) dirtySections |= 1 << (section - 1);
+        if ((y & 15) == 15 && section < SECTION_COUNT - 1) dirtySections |= 1 << (section + 1);
+    }
+
+    /** True once {@link #initLight} has run; unlit chunks report full sky light everywhere. */
+    public boolean hasLight() {
+        return skyLight != null;
+    }
+
+    /** Allocates zeroed light arrays, replacing any previous light. */
+    public void initLight() {
+        skyLight = new byte[VOLUME / 2];
+        blockLight = new byte[VOLUME / 2];
+    }
+
+    /** Drops the light arrays, e.g. while the chunk sits in the cache; it is relit before it is used again. */
+    public void releaseLight() {
+        skyLight = null;
+        blockLight = null;
+    }
+
+    public int getSkyLight(int x, int y, int z) {
+        return skyLight != null ? getNibble(skyLight, index(x, y, z)) : 15;
+    }
+
+    public int getBlockLight(int x, int y, int z) {
+        return blockLight != null ? getNibble(blockLight, index(x, y, z)) : 0;
+    }
+
+    /** Sky light in the high and block light in the low nibble, as baked into vertices. */
+    public int getPackedLight(int x, int y, int z) {
+        if (skyLight == null) return VertexFormat.FULL_SKY;
+        int index = index(x, y, z);
+        return getNibble(skyLight, index) << 4 | getNibble(blockLight, index);
+    }
+
+    /** Packed light of the lowest {@code layers} layers, laid out like the strided {@link #copyBlockIds}. */
+    public void copyPackedLight(byte[] out, int offset, int rowStride, int layerStride, int layers) {
+        for (int y = 0; y < layers; y++) {
+            for (int z = 0; z < SIZE; z++) {
+                int row = offset + y * layerStride + z * rowStride;
+                if (skyLight == null) {
+                    Arrays.fill(out, row, row + SIZE, (byte) VertexFormat.FULL_SKY);
+                    continue;
+                }
+                int cell = index(0, y, z);
+                for (int x = 0; x < SIZE; x++) {
+                    out[row + x] = (byte) (getNibble(skyLight, cell + x) << 4 | getNibble(blockLight, cell + x));
+                }
+            }
+        }
+    }
+
+    public void setSkyLight(int x, int y, int z, int level) {
+        setNibble(skyLight, index(x, y, z), level);
+    }
+
+    public void setBlockLight(int x, int y, int z, int level) {
+        setNibble(blockLight, index(x, y, z), level);
+    }
+
+    /** Raw light arrays for the light engine's bulk passes, indexed by {@code (y * SIZE + z) * SIZE + x}. */
+    public byte[] getSkyLightArray() {
+        return skyLight;
+    }
+
+    public byte[] getBlockLightArray() {
+        return blockLight;
+    }
+
+    public static int getNibble(byte[] nibbles, int index) {
+        return (nibbles[index >> 1] >> ((index & 1) << 2)) & 15;
+    }
+
+    public static void setNibble(byte[] nibbles, int index, int value) {
+        int shift = (index & 1) << 2;
+        nibbles[index >> 1] = (byte) ((nibbles[index >> 1] & ~(15 << shift)) | (value << shift));
+    }
+
+    private static int index(int x, int y, int z) {
+        return (y * SIZE + z) * SIZE + x;
+    }
+
+    public int getNonAirCount(int section) {
+        return sections[section].getNonAirCount();
+    }
+
+    /** True when the section is one block type that hides every face touching it (not air or water). */
+    public boolean isSectionOccluding(int section) {
+        int id = sections[section].getUniformId();
+        return id > 0 && id != Block.WATER.ordinal();
+    }
+
+    /** Copies all block ids into {@code out} in y, z, x order ({@link #VOLUME} bytes). */
+    public void copyBlockIds(byte[] out) {
+        for (int i = 0; i < sections.length; i++) {
+            sections[i].copyTo(out, i * BlockStorage.VOLUME);
+        }
+    }
+
+    /**
+     * Copies the ids of the sections covering the lowest {@code layers} layers into {@code out}, starting at
+     * {@code offset} with z rows {@code rowStride} and y layers {@code layerStride} apart.
+     */
+    public void copyBlockIds(byte[] out, int offset, int rowStride, int layerStride, int layers) {
+        for (int i = 0; i * BlockStorage.SIZE < layers; i++) {
+            sections[i].copyTo(out, offset + i * BlockStorage.SIZE * layerStride, rowStride, layerStride);
+        }
+    }
+
+    /** Replaces all block ids from {@code in}, laid out like {@link #copyBlockIds}. */
+    public void setBlockIds(byte[] in) {
+        for (int i = 0; i < sections.length; i++) {
+            sections[i].copyFrom(in, i * BlockStorage.VOLUME);
+        }
+        rebuildHeightmap();
+        dirtySections = ALL_SECTIONS;
+    }
+
+    /** Copies the blocks and heightmap into {@code target} as they are stored, which is far cheaper than ids. */
+    public void copyBlocksTo(Chunk target) {
+        for (int i = 0; i < sections.length; i++) {
+            target.sections[i].copyFrom(sections[i]);
+        }
+        System.arraycopy(heightmap, 0, target.heightmap, 0, heightmap.length);
+        target.dirtySections = ALL_SECTIONS;
+    }
+
+    public int getSectionUniformId(int section) {
+        return sections[section].getUniformId();
+    }
+
+    public void copySectionIds(int section, byte[] out, int offset) {
+        sections[section].copyTo(out, offset);
+    }
+
+    /** Bulk loader for one section; like {@link #fillSection} it does not touch the heightmap. */
+    public void setSectionIds(int section, byte[] in, int offset) {
+        sections[section].copyFrom(in, offset);
+        dirtySections |= 1 << section;
+    }
+
+    public void fillSection(int section, int id) {
+        sections[section].fill(id);
+        dirtySections |= 1 << section;
+    }
+
+    public int getMemoryBytes() {
+        int total = 0;
+        for (BlockStorage section : sections) {
+            total += section.getMemoryBytes();
+        }
+        if (skyLight != null) total += skyLight.length + blockLight.length;
+        return total;
+    }
+
+    public static long key(int x, int z) {
+        return (((long) x) << 32) ^ (z & 0xffffffffL);
+    }
+
+    public static int keyX(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int keyZ(long key) {
+        return (int) key;
     }
 
     public int getChunkX() {
@@ -41,24 +281,88 @@ public class Chunk {
     }
 
     public boolean isDirty() {
-        return dirty;
+        return dirtySections != 0;
     }
 
-    public void markDirty() { dirty = true; }
+    public int getDirtySections() {
+        return dirtySections;
+    }
+
+    public void markDirty() { dirtySections = ALL_SECTIONS; }
+
+    public void markSectionDirty(int section) {
+        if (section >= 0 && section < SECTION_COUNT) dirtySections |= 1 << section;
+    }
+
+    public void clean(int sectionMask) {
+        dirtySections &= ~sectionMask;
+    }
+
+    /** True when the chunk differs from what is on disk (or from what the generator would produce). */
+    public boolean isModified() {
+        return modified;
+    }
+
+    public void markModified() { modified = true; }
 
-    public void clean() {
-        dirty = false;
+    public void clearModified() { modified = false; }
+
+    public boolean isLightPending() {
+        return lightPending;
     }
 
-    public Block[] getBlocks() {
-        return blocks;
+    public void setLightPending(boolean pending) { lightPending = pending; }
+
+    public ChunkMesh getMesh(int section) {
+        return meshes[section];
     }
 
-    public ChunkMesh getMesh() {
-        return mesh;
+    public void setMesh(int section, ChunkMesh mesh) {
+        meshes[section] = mesh;
     }
 
-    public void setMesh(ChunkMesh mesh) {
-        this.mesh = mesh;
+    /** Face connectivity of the section as last computed by the mesher, see {@link SectionVisibility}. */
+    public int getVisibility(int section) {
+        return visibility[section];
+    }
+
+    public void setVisibility(int section, int value) {
+        visibility[section] = value;
+    }
+
+    /** Level of detail the section meshes are (being) built at; 0 is full resolution. */
+    public int getLod() {
+        return lod;
+    }
+
+    public void setLod(int lod) {
+        this.lod = lod;
+    }
+
+    public MeshData getPendingMesh(int section) {
+        return pendingMeshes[section];
+    }
+
+    public void setPendingMesh(int section, MeshData mesh) {
+        pendingMeshes[section] = mesh;
+    }
+
+    /** Frees the GL meshes and drops pending ones; the chunk is remeshed from scratch if it is loaded again. */
+    public void releaseMeshes() {
+        for (int section = 0; section < SECTION_COUNT; section++) {
+            if (meshes[section] != null) {
+                meshes[section].destroy();
+                meshes[section] = null;
+            }
+            pendingMeshes[section] = null;
+        }
+        markDirty();
+    }
+
+    public boolean hasPendingMeshes() {
+        for (MeshData data : pendingMeshes) {
+            if (data != null) return true;
+        }
+        return false;
     }
 }
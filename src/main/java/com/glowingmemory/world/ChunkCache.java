@@ -0,0 +1,46 @@
+package com.glowingmemory.world;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Recently unloaded chunks, kept around so turning back does not hit the disk or the generator again.
+ * Only block data is cached: meshes are released before a chunk goes in, and modified chunks are saved
+ * first, so evicting the least recently unloaded chunk once the memory cap is exceeded is free.
+ */
+public class ChunkCache {
+    private final Map<Long, Chunk> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final long maxBytes;
+    private long bytes;
+
+    public ChunkCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public void put(Chunk chunk) {
+        Chunk old = entries.put(Chunk.key(chunk.getChunkX(), chunk.getChunkZ()), chunk);
+        if (old != null) bytes -= old.getMemoryBytes();
+        bytes += chunk.getMemoryBytes();
+        Iterator<Chunk> it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().getMemoryBytes();
+            it.remove();
+        }
+    }
+
+    /** Removes and returns the cached chunk, or null if it is not cached. */
+    public Chunk take(int x, int z) {
+        Chunk chunk = entries.remove(Chunk.key(x, z));
+        if (chunk != null) bytes -= chunk.getMemoryBytes();
+        return chunk;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getMemoryBytes() {
+        return bytes;
+    }
+}
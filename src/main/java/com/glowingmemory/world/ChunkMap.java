@@ -0,0 +1,263 @@
+package com.glowingmemory.world;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Open-addressing map from chunk coordinates to loaded chunks, without boxing the {@link Chunk#key}.
+ * <p>
+ * One thread (the main thread) writes and iterates; any thread may call {@link #get} at the same time
+ * without locking. A slot's chunk is published before its key, and removal only clears the chunk, leaving
+ * the key as a tombstone, so a concurrent reader sees either the old or the new state of a slot. A table
+ * that has to grow is rebuilt off to the side and then published. Once tombstones take up a quarter of a
+ * table that does not need to grow, it is rehashed in place instead, through a reused scratch copy; readers
+ * then retry if a rehash started or finished while they probed.
+ * <p>
+ * Most lookups (collision, raycasts, meshing) land in the same chunk as the one before. Each caller keeps
+ * its own last hit in a {@link Cursor}, so threads never write to a shared cache line.
+ */
+public class ChunkMap implements Iterable<Chunk> {
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle CHUNKS = MethodHandles.arrayElementVarHandle(Chunk[].class);
+    /** Marks a slot that was never used; this key would belong to chunk x = Integer.MIN_VALUE, z = 0. */
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private volatile Table table = new Table(64);
+    /** Odd while a rehash in place is moving entries, bumped again when it is done. */
+    private volatile int version;
+    /** Bumped on every removal, so cursors can tell whether their last hit may be gone. */
+    private volatile int removals;
+    private int size;
+    // Slots holding a key, live or tombstone; drives rebuilding.
+    private int used;
+    // Live entries set aside while rehashing in place; writer only.
+    private long[] scratchKeys = new long[0];
+    private Chunk[] scratchChunks = new Chunk[0];
+
+    public Chunk get(int x, int z) {
+        long key = Chunk.key(x, z);
+        while (true) {
+            int before = version;
+            if ((before & 1) == 0) {
+                Chunk chunk = table.get(key);
+                if (version == before) return chunk;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /** A lookup handle that remembers its last hit; for use by one thread at a time. */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    public boolean contains(int x, int z) {
+        return get(x, z) != null;
+    }
+
+    /** Adds {@code chunk} under its own coordinates unless a chunk is already there; returns the existing one. */
+    public Chunk putIfAbsent(Chunk chunk) {
+        long key = Chunk.key(chunk.getChunkX(), chunk.getChunkZ());
+        if (key == EMPTY) throw new IllegalArgumentException("Chunk coordinates out of range: " + chunk.getChunkX());
+        Table current = table;
+        int slot = current.find(key);
+        if (slot >= 0) {
+            Chunk existing = current.chunks[slot];
+            if (existing != null) return existing;
+            CHUNKS.setVolatile(current.chunks, slot, chunk);
+            size++;
+            return null;
+        }
+        if ((used + 1) * 4 > current.keys.length * 3) {
+            if ((size + 1) * 2 > current.keys.length) {
+                current = rebuild();
+            } else {
+                rehashInPlace(current);
+            }
+        }
+        current.insert(key, chunk);
+        size++;
+        used++;
+        return null;
+    }
+
+    public Chunk remove(int x, int z) {
+        Table current = table;
+        int slot = current.find(Chunk.key(x, z));
+        if (slot < 0) return null;
+        Chunk chunk = current.chunks[slot];
+        if (chunk == null) return null;
+        CHUNKS.setVolatile(current.chunks, slot, null);
+        size--;
+        removals++;
+        return chunk;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of slots for writer-side iteration with {@link #chunkAt}, which unlike {@link #iterator} allocates
+     * nothing. Removing chunks during such a loop is fine; adding them is not.
+     */
+    public int slotCount() {
+        return table.chunks.length;
+    }
+
+    /** The chunk in {@code slot}, or null for an empty slot; writer only. */
+    public Chunk chunkAt(int slot) {
+        return table.chunks[slot];
+    }
+
+    /** Writer-side iteration; {@link Iterator#remove} is supported. */
+    @Override
+    public Iterator<Chunk> iterator() {
+        Table current = table;
+        return new Iterator<>() {
+            private int next = advance(0);
+            private int last = -1;
+
+            private int advance(int from) {
+                while (from < current.chunks.length && current.chunks[from] == null) from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < current.chunks.length;
+            }
+
+            @Override
+            public Chunk next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                last = next;
+                next = advance(next + 1);
+                return current.chunks[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) throw new IllegalStateException();
+                Chunk chunk = current.chunks[last];
+                ChunkMap.this.remove(chunk.getChunkX(), chunk.getChunkZ());
+                last = -1;
+            }
+        };
+    }
+
+    /** Copies the live entries into a table at most half full, dropping tombstones. */
+    private Table rebuild() {
+        int capacity = 64;
+        while ((size + 1) * 2 > capacity) capacity <<= 1;
+        Table rebuilt = new Table(capacity);
+        Table old = table;
+        for (int i = 0; i < old.keys.length; i++) {
+            if (old.chunks[i] != null) rebuilt.insert(old.keys[i], old.chunks[i]);
+        }
+        used = size;
+        table = rebuilt;
+        return rebuilt;
+    }
+
+    /** Drops the tombstones of {@code current} without allocating a new table. */
+    private void rehashInPlace(Table current) {
+        int capacity = current.keys.length;
+        if (scratchKeys.length < capacity) {
+            scratchKeys = new long[capacity];
+            scratchChunks = new Chunk[capacity];
+        }
+        int live = 0;
+        for (int i = 0; i < capacity; i++) {
+            Chunk chunk = current.chunks[i];
+            if (chunk == null) continue;
+            scratchKeys[live] = current.keys[i];
+            scratchChunks[live++] = chunk;
+        }
+        version++;
+        for (int i = 0; i < capacity; i++) {
+            KEYS.setVolatile(current.keys, i, EMPTY);
+            CHUNKS.setVolatile(current.chunks, i, null);
+        }
+        for (int i = 0; i < live; i++) {
+            current.insert(scratchKeys[i], scratchChunks[i]);
+        }
+        version++;
+        Arrays.fill(scratchChunks, 0, live, null);
+        used = size;
+    }
+
+    /**
+     * Lookups that first check the chunk they found last, which is still loaded as long as nothing has been
+     * removed from the map since.
+     */
+    public final class Cursor {
+        private Chunk last;
+        private int lastRemovals;
+
+        private Cursor() {
+        }
+
+        public Chunk get(int x, int z) {
+            Chunk chunk = last;
+            // Read before the lookup, so a removal racing with it makes this hit stale.
+            int stamp = removals;
+            if (chunk != null && stamp == lastRemovals && chunk.getChunkX() == x && chunk.getChunkZ() == z) {
+                return chunk;
+            }
+            chunk = ChunkMap.this.get(x, z);
+            if (chunk != null) {
+                last = chunk;
+                lastRemovals = stamp;
+            }
+            return chunk;
+        }
+    }
+
+    private static final class Table {
+        final long[] keys;
+        final Chunk[] chunks;
+        final int shift;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            chunks = new Chunk[capacity];
+            Arrays.fill(keys, EMPTY);
+            shift = 64 - Integer.numberOfTrailingZeros(capacity);
+            mask = capacity - 1;
+        }
+
+        int slot(long key) {
+            // Fibonacci hashing spreads neighboring chunk coordinates over the whole table.
+            return (int) ((key * 0x9e3779b97f4a7c15L) >>> shift);
+        }
+
+        Chunk get(long key) {
+            for (int i = slot(key); ; i = (i + 1) & mask) {
+                long k = (long) KEYS.getVolatile(keys, i);
+                if (k == key) return (Chunk) CHUNKS.getVolatile(chunks, i);
+                if (k == EMPTY) return null;
+            }
+        }
+
+        /** Slot holding {@code key}, live or tombstone, or -1; writer only. */
+        int find(long key) {
+            for (int i = slot(key); ; i = (i + 1) & mask) {
+                long k = keys[i];
+                if (k == key) return i;
+                if (k == EMPTY) return -1;
+            }
+        }
+
+        void insert(long key, Chunk chunk) {
+            int i = slot(key);
+            while (keys[i] != EMPTY) i = (i + 1) & mask;
+            CHUNKS.setVolatile(chunks, i, chunk);
+            KEYS.setVolatile(keys, i, key);
+        }
+    }
+}
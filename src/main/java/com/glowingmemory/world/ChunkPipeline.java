@@ -0,0 +1,146 @@
+package com.glowingmemory.world;
+
+import com.glowingmemory.util.Log;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Loads or generates chunks on a worker pool. Requests, cancellation and draining happen on the
+ * main thread only; workers never touch the world, they just hand finished chunks back.
+ */
+public class ChunkPipeline {
+    private final Loader loader;
+    private final ExecutorService workers;
+    private final Map<Long, Future<?>> pending = new HashMap<>();
+    private final Queue<Chunk> completed = new ConcurrentLinkedQueue<>();
+    private final Queue<Long> failed = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> urgent = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> finished = new ConcurrentLinkedQueue<>();
+
+    public ChunkPipeline(Loader loader) {
+        this.loader = loader;
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "chunk-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        Log.info("Chunk pipeline started with " + threads + " worker thread(s)");
+    }
+
+    public void request(int x, int z) {
+        long key = Chunk.key(x, z);
+        if (pending.containsKey(key)) return;
+        pending.put(key, workers.submit(() -> run(x, z)));
+    }
+
+    /**
+     * Runs {@code task} on a worker ahead of any queued chunk, then {@code done} on the main thread during the
+     * next {@link #drainCompleted}, whether or not the task failed. Such tasks are never cancelled.
+     */
+    public void submit(Runnable task, Runnable done) {
+        urgent.add(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.error("Chunk worker task failed", e);
+            }
+            finished.add(done);
+        });
+        // Whichever worker gets to it first runs it: an idle one through this, a busy one before its next chunk.
+        workers.execute(this::runUrgent);
+    }
+
+    private void runUrgent() {
+        Runnable task;
+        while ((task = urgent.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void run(int x, int z) {
+        runUrgent();
+        try {
+            completed.add(loader.load(x, z));
+        } catch (RuntimeException e) {
+            Log.error("Chunk worker failed at (" + x + ", " + z + ")", e);
+            failed.add(Chunk.key(x, z));
+        }
+    }
+
+    public void drainCompleted(Consumer<Chunk> consumer) {
+        Runnable done;
+        while ((done = finished.poll()) != null) {
+            done.run();
+        }
+        Long failedKey;
+        while ((failedKey = failed.poll()) != null) {
+            pending.remove(failedKey);
+        }
+        Chunk chunk;
+        while ((chunk = completed.poll()) != null) {
+            pending.remove(Chunk.key(chunk.getChunkX(), chunk.getChunkZ()));
+            consumer.accept(chunk);
+        }
+    }
+
+    public void cancelOutside(int centerX, int centerZ, int radius) {
+        if (pending.isEmpty()) return;
+        Iterator<Map.Entry<Long, Future<?>>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Future<?>> entry = it.next();
+            long key = entry.getKey();
+            int dx = Chunk.keyX(key) - centerX;
+            int dz = Chunk.keyZ(key) - centerZ;
+            if (Math.abs(dx) > radius || Math.abs(dz) > radius) {
+                if (entry.getValue().cancel(false)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Drops queued work and waits for the chunks being loaded to finish. Workers are not interrupted: an
+     * interrupt inside region I/O closes the shared region file channel, which the final save still writes to.
+     */
+    public void shutdown() {
+        urgent.clear();
+        for (Future<?> future : pending.values()) {
+            future.cancel(false);
+        }
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(5, TimeUnit.SECONDS)) {
+                Log.warn("Chunk workers did not stop within 5 seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pending.clear();
+        urgent.clear();
+        completed.clear();
+        failed.clear();
+        finished.clear();
+    }
+
+    public interface Loader {
+        Chunk load(int x, int z);
+    }
+}
@@ -1,65 +1,117 @@
 package com.glowingmemory.world;
 
-import org.joml.Vector3f;
+import org.joml.Vector3fc;
+
+import java.util.stream.IntStream;
 
 public class Raycaster {
-    public static class RayResult {
-        public final Vector3f hit;
-        public final Vector3f normal;
-        public final Block block;
+    /** Read-only block lookup for rays; returns null where nothing is loaded, which stops the ray. */
+    public interface BlockSource {
+        Block getBlock(int x, int y, int z);
+    }
 
-        public RayResult(Vector3f hit, Vector3f normal, Block block) {
-            this.hit = hit;
-            this.normal = normal;
-            this.block = block;
+    /** Where a ray stopped. Owned by the caller and overwritten by each cast, so casting allocates nothing. */
+    public static class RayHit {
+        public int x;
+        public int y;
+        public int z;
+        /** Face the ray entered through; all zero when it started inside the block. */
+        public int normalX;
+        public int normalY;
+        public int normalZ;
+        /** The block hit, or null if the ray missed. */
+        public Block block;
+        public float distance;
+
+        public boolean hasNormal() {
+            return normalX != 0 || normalY != 0 || normalZ != 0;
         }
     }
 
-    public static RayResult raycast(Vector3f origin, Vector3f dir, World world, float maxDistance) {
-        Vector3f direction = new Vector3f(dir).normalize();
-        Vector3f pos = new Vector3f(origin);
+    public static boolean raycast(Vector3fc origin, Vector3fc dir, BlockSource blocks, float maxDistance, RayHit out) {
+        return raycast(blocks, origin.x(), origin.y(), origin.z(), dir.x(), dir.y(), dir.z(), maxDistance, out);
+    }
 
-        int bx = (int) Math.floor(pos.x);
-        int by = (int) Math.floor(pos.y);
-        int bz = (int) Math.floor(pos.z);
+    /** Walks the voxels along the ray until one is not air, within {@code maxDistance}; fills {@code out} either way. */
+    public static boolean raycast(BlockSource blocks, float originX, float originY, float originZ,
+                                  float dirX, float dirY, float dirZ, float maxDistance, RayHit out) {
+        out.block = null;
+        float length = (float) Math.sqrt(dirX * dirX + dirY * dirY + dirZ * dirZ);
+        if (length == 0) return false;
+        float directionX = dirX / length;
+        float directionY = dirY / length;
+        float directionZ = dirZ / length;
 
-        int stepX = Integer.compare((int) Math.signum(direction.x), 0);
-        int stepY = Integer.compare((int) Math.signum(direction.y), 0);
-        int stepZ = Integer.compare((int) Math.signum(direction.z), 0);
+        int bx = (int) Math.floor(originX);
+        int by = (int) Math.floor(originY);
+        int bz = (int) Math.floor(originZ);
 
-        float tDeltaX = stepX != 0 ? Math.abs(1f / direction.x) : Float.POSITIVE_INFINITY;
-        float tDeltaY = stepY != 0 ? Math.abs(1f / direction.y) : Float.POSITIVE_INFINITY;
-        float tDeltaZ = stepZ != 0 ? Math.abs(1f / direction.z) : Float.POSITIVE_INFINITY;
+        int stepX = Integer.compare((int) Math.signum(directionX), 0);
+        int stepY = Integer.compare((int) Math.signum(directionY), 0);
+        int stepZ = Integer.compare((int) Math.signum(directionZ), 0);
 
-        float tMaxX = stepX > 0 ? ((bx + 1) - pos.x) * tDeltaX : (pos.x - bx) * tDeltaX;
-        float tMaxY = stepY > 0 ? ((by + 1) - pos.y) * tDeltaY : (pos.y - by) * tDeltaY;
-        float tMaxZ = stepZ > 0 ? ((bz + 1) - pos.z) * tDeltaZ : (pos.z - bz) * tDeltaZ;
+        float tDeltaX = stepX != 0 ? Math.abs(1f / directionX) : Float.POSITIVE_INFINITY;
+        float tDeltaY = stepY != 0 ? Math.abs(1f / directionY) : Float.POSITIVE_INFINITY;
+        float tDeltaZ = stepZ != 0 ? Math.abs(1f / directionZ) : Float.POSITIVE_INFINITY;
 
-        Vector3f lastNormal = null;
+        float tMaxX = stepX > 0 ? ((bx + 1) - originX) * tDeltaX : (originX - bx) * tDeltaX;
+        float tMaxY = stepY > 0 ? ((by + 1) - originY) * tDeltaY : (originY - by) * tDeltaY;
+        float tMaxZ = stepZ > 0 ? ((bz + 1) - originZ) * tDeltaZ : (originZ - bz) * tDeltaZ;
+
+        int normalX = 0;
+        int normalY = 0;
+        int normalZ = 0;
         float traveled = 0f;
         while (traveled <= maxDistance) {
-            Block block = world.getBlockGlobal(bx, by, bz);
+            Block block = blocks.getBlock(bx, by, bz);
+            if (block == null) return false;
             if (block != Block.AIR) {
-                return new RayResult(new Vector3f(bx, by, bz), lastNormal, block);
+                out.x = bx;
+                out.y = by;
+                out.z = bz;
+                out.normalX = normalX;
+                out.normalY = normalY;
+                out.normalZ = normalZ;
+                out.block = block;
+                out.distance = traveled;
+                return true;
             }
 
+            normalX = 0;
+            normalY = 0;
+            normalZ = 0;
             if (tMaxX < tMaxY && tMaxX < tMaxZ) {
                 bx += stepX;
                 traveled = tMaxX;
                 tMaxX += tDeltaX;
-                lastNormal = new Vector3f(-stepX, 0, 0);
+                normalX = -stepX;
             } else if (tMaxY < tMaxZ) {
                 by += stepY;
                 traveled = tMaxY;
                 tMaxY += tDeltaY;
-                lastNormal = new Vector3f(0, -stepY, 0);
+                normalY = -stepY;
             } else {
                 bz += stepZ;
                 traveled = tMaxZ;
                 tMaxZ += tDeltaZ;
-                lastNormal = new Vector3f(0, 0, -stepZ);
+                normalZ = -stepZ;
             }
         }
-        return null;
+        return false;
+    }
+
+    /**
+     * Casts many rays at once on the fork-join common pool and returns how many hit. Ray {@code i} starts at
+     * {@code rays[6i]..rays[6i+2]} and heads along {@code rays[6i+3]..rays[6i+5]}; its result goes to
+     * {@code hits[i]}. The blocks are read from several threads at once, so they come from a
+     * {@link BlockSnapshot}; the world itself reads through a lookup cursor that only the main thread may use.
+     */
+    public static int raycastAll(BlockSnapshot blocks, float[] rays, float maxDistance, RayHit[] hits) {
+        int count = hits.length;
+        if (rays.length < count * 6) throw new IllegalArgumentException("Need 6 floats per ray, got " + rays.length);
+        return (int) IntStream.range(0, count).parallel()
+                .filter(i -> raycast(blocks, rays[6 * i], rays[6 * i + 1], rays[6 * i + 2],
+                        rays[6 * i + 3], rays[6 * i + 4], rays[6 * i + 5], maxDistance, hits[i]))
+                .count();
     }
 }
@@ -4,8 +4,15 @@ import java.util.Random;
 
 public class SimplexNoise {
     private final short[] perm = new short[512];
+    private final byte[] permMod12 = new byte[512];
     private static final double F2 = 0.5 * (Math.sqrt(3.0) - 1.0);
     private static final double G2 = (3.0 - Math.sqrt(3.0)) / 6.0;
+    private static final double G2_TWICE = 2.0 * G2;
+    // The twelve gradient directions, as x and z weights.
+    private static final double[] GRAD_X = {1, -1, 1, -1, 1, -1, 0, 0, 1, -1, 0.5, 0.5};
+    private static final double[] GRAD_Z = {1, 1, -1, -1, 0, 0, 1, -1, 0.5, 0.5, 1, -1};
+
+    private static final ThreadLocal<Row> ROW = ThreadLocal.withInitial(Row::new);
 
     public SimplexNoise(long seed) {
         short[] p = new short[256];
@@ -21,6 +28,129 @@ public class SimplexNoise {
         }
         for (int i = 0; i < 512; i++) {
             perm[i] = p[i & 255];
+            permMod12[i] = (byte) (perm[i] % 12);
+        }
+    }
+
+    /**
+     * Fills {@code out[z * width + x]} with the noise at world column ({@code originX + x}, {@code originZ + z})
+     * scaled by {@code frequency}, times {@code amplitude}. With {@code accumulate} the values are added to
+     * what {@code out} already holds. Each sample equals {@code noise((originX + x) * frequency, ...) * amplitude}
+     * (a zero may come out with the other sign), so batch and scalar callers generate the same terrain.
+     * <p>
+     * Each row is done in two passes. The first finds every sample's simplex cell and offsets, looking up the
+     * corner gradients only when the cell changes, which along a row is rarely. The second evaluates all three
+     * corners over plain arrays without branches, which the JIT can vectorize.
+     */
+    public void fill(double[] out, int originX, int originZ, int width, int depth, double frequency, double amplitude,
+                     boolean accumulate) {
+        short[] perm = this.perm;
+        byte[] permMod12 = this.permMod12;
+        Row scratch = ROW.get().ensure(width);
+        double[] x0s = scratch.x0;
+        double[] z0s = scratch.z0;
+        double[] seconds = scratch.second;
+        double[] gx0s = scratch.gx0;
+        double[] gz0s = scratch.gz0;
+        double[] gx1s = scratch.gx1;
+        double[] gz1s = scratch.gz1;
+        double[] gx2s = scratch.gx2;
+        double[] gz2s = scratch.gz2;
+        for (int z = 0; z < depth; z++) {
+            double zin = (originZ + z) * frequency;
+            int cellI = 0;
+            int cellJ = 0;
+            boolean cached = false;
+            // Gradients of the cell's corners: origin, +x, +z and the far one.
+            double g0x = 0;
+            double g0z = 0;
+            double gxx = 0;
+            double gxz = 0;
+            double gzx = 0;
+            double gzz = 0;
+            double g2x = 0;
+            double g2z = 0;
+            for (int x = 0; x < width; x++) {
+                double xin = (originX + x) * frequency;
+                double s = (xin + zin) * F2;
+                int i = fastfloor(xin + s);
+                int j = fastfloor(zin + s);
+                double t = (i + j) * G2;
+                double x0 = xin - (i - t);
+                double z0 = zin - (j - t);
+                if (!cached || i != cellI || j != cellJ) {
+                    cellI = i;
+                    cellJ = j;
+                    cached = true;
+                    int ii = i & 255;
+                    int row0 = perm[j & 255];
+                    int row1 = perm[(j & 255) + 1];
+                    int g0 = permMod12[ii + row0];
+                    int gx = permMod12[ii + 1 + row0];
+                    int gz = permMod12[ii + row1];
+                    int g2 = permMod12[ii + 1 + row1];
+                    g0x = GRAD_X[g0];
+                    g0z = GRAD_Z[g0];
+                    gxx = GRAD_X[gx];
+                    gxz = GRAD_Z[gx];
+                    gzx = GRAD_X[gz];
+                    gzz = GRAD_Z[gz];
+                    g2x = GRAD_X[g2];
+                    g2z = GRAD_Z[g2];
+                }
+                // The second corner is +x in the lower triangle of the cell and +z in the upper one.
+                boolean lower = x0 > z0;
+                x0s[x] = x0;
+                z0s[x] = z0;
+                seconds[x] = lower ? 1.0 : 0.0;
+                gx0s[x] = g0x;
+                gz0s[x] = g0z;
+                gx1s[x] = lower ? gxx : gzx;
+                gz1s[x] = lower ? gxz : gzz;
+                gx2s[x] = g2x;
+                gz2s[x] = g2z;
+            }
+
+            int row = z * width;
+            for (int x = 0; x < width; x++) {
+                double x0 = x0s[x];
+                double z0 = z0s[x];
+                double i1 = seconds[x];
+                double x1 = x0 - i1 + G2;
+                double z1 = z0 - (1.0 - i1) + G2;
+                double x2 = x0 - 1.0 + G2_TWICE;
+                double z2 = z0 - 1.0 + G2_TWICE;
+                // Clamping instead of skipping a corner that is out of reach turns its term into a zero.
+                double t0 = Math.max(0.5 - x0 * x0 - z0 * z0, 0.0);
+                double t1 = Math.max(0.5 - x1 * x1 - z1 * z1, 0.0);
+                double t2 = Math.max(0.5 - x2 * x2 - z2 * z2, 0.0);
+                t0 *= t0;
+                t1 *= t1;
+                t2 *= t2;
+                double n0 = t0 * t0 * (gx0s[x] * x0 + gz0s[x] * z0);
+                double n1 = t1 * t1 * (gx1s[x] * x1 + gz1s[x] * z1);
+                double n2 = t2 * t2 * (gx2s[x] * x2 + gz2s[x] * z2);
+                double value = 70.0 * (n0 + n1 + n2) * amplitude;
+                if (accumulate) {
+                    out[row + x] += value;
+                } else {
+                    out[row + x] = value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fractal Brownian motion: {@code octaves} layers of {@link #fill} summed into {@code out}. Each layer has
+     * {@code lacunarity} times the frequency and {@code gain} times the amplitude of the one before it. Layers are
+     * added in order, so each sample equals the same {@link #noise} terms summed one octave at a time.
+     */
+    public void fillFbm(double[] out, int originX, int originZ, int width, int depth, double frequency,
+                        double amplitude, int octaves, double lacunarity, double gain) {
+        for (int octave = 0; octave < octaves; octave++) {
+            fill(out, originX, originZ, width, depth, frequency, amplitude, octave > 0);
+            frequency *= lacunarity;
+            amplitude *= gain;
         }
     }
 
@@ -40,8 +170,8 @@ public class SimplexNoise {
 
         double x1 = x0 - i1 + G2;
         double z1 = z0 - j1 + G2;
-        double x2 = x0 - 1.0 + 2.0 * G2;
-        double z2 = z0 - 1.0 + 2.0 * G2;
+        double x2 = x0 - 1.0 + G2_TWICE;
+        double z2 = z0 - 1.0 + G2_TWICE;
 
         int ii = i & 255;
         int jj = j & 255;
@@ -56,29 +186,39 @@ public class SimplexNoise {
         double t = 0.5 - x * x - z * z;
         if (t < 0) return 0.0;
         t *= t;
-        int gi = perm[i + perm[j]] % 12;
-        double grad = grad(gi, x, z);
-        return t * t * grad;
+        int gi = permMod12[i + perm[j]];
+        return t * t * (GRAD_X[gi] * x + GRAD_Z[gi] * z);
     }
 
     private int fastfloor(double x) {
         return x > 0 ? (int) x : (int) x - 1;
     }
 
-    private double grad(int hash, double x, double z) {
-        switch (hash % 12) {
-            case 0: return x + z;
-            case 1: return -x + z;
-            case 2: return x - z;
-            case 3: return -x - z;
-            case 4: return x;
-            case 5: return -x;
-            case 6: return z;
-            case 7: return -z;
-            case 8: return x + 0.5 * z;
-            case 9: return -x + 0.5 * z;
-            case 10: return 0.5 * x + z;
-            default: return 0.5 * x - z;
+    /** Per-thread scratch for one row of {@link #fill}. */
+    private static final class Row {
+        double[] x0 = new double[0];
+        double[] z0 = new double[0];
+        double[] second = new double[0];
+        double[] gx0 = new double[0];
+        double[] gz0 = new double[0];
+        double[] gx1 = new double[0];
+        double[] gz1 = new double[0];
+        double[] gx2 = new double[0];
+        double[] gz2 = new double[0];
+
+        Row ensure(int width) {
+            if (x0.length < width) {
+                x0 = new double[width];
+                z0 = new double[width];
+                second = new double[width];
+                gx0 = new double[width];
+                gz0 = new double[width];
+                gx1 = new double[width];
+                gz1 = new double[width];
+                gx2 = new double[width];
+                gz2 = new double[width];
+            }
+            return this;
         }
     }
 }
@@ -1,29 +1,40 @@
 package com.glowingmemory.world;
 
-import java.util.Random;
-
+/**
+ * Stateless terrain generator: every random decision is a hash of the seed and the world column, so
+ * {@link #generate} may run on any number of threads at once and always yields the same chunk.
+ */
 public class TerrainGenerator {
+    private static final long SALT_TREE = 0x74726565L;
+    private static final long SALT_TREE_HEIGHT = 0x68656967L;
+    private static final long SALT_FOLIAGE = 0x666f6c69L;
+    /** Horizontal reach of a tree canopy from its trunk. */
+    private static final int TREE_RADIUS = 2;
+    private static final int PADDED = Chunk.SIZE + 2 * TREE_RADIUS;
+
     private final long seed;
     private final SimplexNoise noise;
-    private final Random random;
 
     public TerrainGenerator(long seed) {
         this.seed = seed;
         this.noise = new SimplexNoise(seed);
-        this.random = new Random(seed);
     }
 
     public void generate(Chunk chunk) {
-        random.setSeed(seed ^ (chunk.getChunkX() * 341873128712L) ^ (chunk.getChunkZ() * 132897987541L));
         int baseX = chunk.getChunkX() * Chunk.SIZE;
         int baseZ = chunk.getChunkZ() * Chunk.SIZE;
+        // Height noise covers an apron around the chunk so trees rooted in neighbors can be placed too.
+        double[] broad = new double[PADDED * PADDED];
+        double[] detail = new double[PADDED * PADDED];
+        double[] foliage = new double[Chunk.SIZE * Chunk.SIZE];
+        noise.fill(broad, baseX - TREE_RADIUS, baseZ - TREE_RADIUS, PADDED, PADDED, 0.01, 1, false);
+        noise.fill(detail, baseX - TREE_RADIUS, baseZ - TREE_RADIUS, PADDED, PADDED, 0.05, 1, false);
+        noise.fill(foliage, baseX, baseZ, Chunk.SIZE, Chunk.SIZE, 0.12, 1, false);
+
+        // Phase one: terrain and ground cover, each column on its own.
         for (int x = 0; x < Chunk.SIZE; x++) {
             for (int z = 0; z < Chunk.SIZE; z++) {
-                int worldX = baseX + x;
-                int worldZ = baseZ + z;
-                float height = sampleHeight(worldX, worldZ);
-                int h = (int) height;
-                int surfaceY = Math.max(0, h - 1);
+                int h = terrainHeight(broad, detail, x + TREE_RADIUS, z + TREE_RADIUS);
                 for (int y = 0; y < Chunk.HEIGHT; y++) {
                     Block block = Block.AIR;
                     if (y < h - 3) block = Block.STONE;
@@ -33,56 +44,103 @@ public class TerrainGenerator {
                         chunk.setBlock(x, y, z, block);
                     }
                 }
-                boolean treePlaced = false;
-                if (h > 4 && Math.abs(noise.noise(worldX * 0.05, worldZ * 0.05)) > 0.7 && random.nextFloat() < 0.05f) {
-                    buildTree(chunk, x, h, z);
-                    treePlaced = true;
+                int worldX = baseX + x;
+                int worldZ = baseZ + z;
+                if (!hasTree(broad, detail, x + TREE_RADIUS, z + TREE_RADIUS, worldX, worldZ)) {
+                    scatterFoliage(chunk, x, Math.max(0, h - 1), z, foliage[z * Chunk.SIZE + x],
+                            columnFloat(worldX, worldZ, SALT_FOLIAGE));
                 }
-                if (!treePlaced) {
-                    scatterFoliage(chunk, x, surfaceY, z, worldX, worldZ);
+            }
+        }
+
+        // Phase two: every tree whose canopy reaches this chunk, wherever it is rooted. Writes outside the
+        // chunk are dropped and the neighbor places its own part the same way, so no chunk waits on another.
+        for (int px = 0; px < PADDED; px++) {
+            for (int pz = 0; pz < PADDED; pz++) {
+                int worldX = baseX + px - TREE_RADIUS;
+                int worldZ = baseZ + pz - TREE_RADIUS;
+                if (hasTree(broad, detail, px, pz, worldX, worldZ)) {
+                    int height = 4 + (int) (columnHash(worldX, worldZ, SALT_TREE_HEIGHT) >>> 33) % 3;
+                    buildTree(chunk, px - TREE_RADIUS, terrainHeight(broad, detail, px, pz), pz - TREE_RADIUS, height);
                 }
             }
         }
     }
 
-    private float sampleHeight(int x, int z) {
-        double n = noise.noise(x * 0.01, z * 0.01) * 12;
-        double n2 = noise.noise(x * 0.05, z * 0.05) * 3;
-        return 48 + (float) (n + n2);
+    private static int terrainHeight(double[] broad, double[] detail, int px, int pz) {
+        int column = pz * PADDED + px;
+        return (int) (48 + (float) (broad[column] * 12 + detail[column] * 3));
+    }
+
+    private boolean hasTree(double[] broad, double[] detail, int px, int pz, int worldX, int worldZ) {
+        return terrainHeight(broad, detail, px, pz) > 4 && Math.abs(detail[pz * PADDED + px]) > 0.7
+                && columnFloat(worldX, worldZ, SALT_TREE) < 0.05f;
     }
 
-    private void buildTree(Chunk chunk, int x, int h, int z) {
-        int height = 4 + new Random(x * 31L + z * 17L).nextInt(3);
+    private void buildTree(Chunk chunk, int x, int h, int z, int height) {
         for (int i = 0; i < height; i++) {
-            if (h + i < Chunk.HEIGHT)
-                chunk.setBlock(x, h + i, z, Block.WOOD);
+            placeDecoration(chunk, x, h + i, z, Block.WOOD);
         }
-        int radius = 2;
-        for (int dx = -radius; dx <= radius; dx++) {
-            for (int dz = -radius; dz <= radius; dz++) {
+        for (int dx = -TREE_RADIUS; dx <= TREE_RADIUS; dx++) {
+            for (int dz = -TREE_RADIUS; dz <= TREE_RADIUS; dz++) {
                 for (int dy = height - 2; dy <= height + 1; dy++) {
-                    int bx = x + dx;
-                    int by = h + dy;
-                    int bz = z + dz;
-                    if (bx >= 0 && bx < Chunk.SIZE && bz >= 0 && bz < Chunk.SIZE && by < Chunk.HEIGHT) {
-                        double dist = Math.sqrt(dx * dx + dz * dz + (dy - height) * 0.6);
-                        if (dist <= radius + 0.2) {
-                            chunk.setBlock(bx, by, bz, Block.LEAVES);
-                        }
+                    double dist = Math.sqrt(dx * dx + dz * dz + (dy - height) * 0.6);
+                    if (dist <= TREE_RADIUS + 0.2) {
+                        placeDecoration(chunk, x + dx, h + dy, z + dz, Block.LEAVES);
                     }
                 }
             }
         }
     }
 
-    private void scatterFoliage(Chunk chunk, int x, int surfaceY, int z, int worldX, int worldZ) {
+    /**
+     * Writes a decoration block if it outranks what is there: air, then tall grass, leaves and wood. Terrain is
+     * never replaced. The ranking makes overlapping trees come out the same in whatever order they are placed.
+     */
+    private static void placeDecoration(Chunk chunk, int x, int y, int z, Block block) {
+        if (x < 0 || x >= Chunk.SIZE || z < 0 || z >= Chunk.SIZE || y < 0 || y >= Chunk.HEIGHT) return;
+        if (decorationRank(block) > decorationRank(chunk.getBlock(x, y, z))) {
+            chunk.setBlock(x, y, z, block);
+        }
+    }
+
+    private static int decorationRank(Block block) {
+        switch (block) {
+            case AIR: return 0;
+            case TALL_GRASS: return 1;
+            case LEAVES: return 2;
+            case WOOD: return 3;
+            default: return Integer.MAX_VALUE;
+        }
+    }
+
+    private void scatterFoliage(Chunk chunk, int x, int surfaceY, int z, double foliageNoise, float roll) {
         int plantY = surfaceY + 1;
         if (plantY >= Chunk.HEIGHT) return;
         if (chunk.getBlock(x, surfaceY, z) != Block.GRASS) return;
         if (chunk.getBlock(x, plantY, z) != Block.AIR) return;
-        float noiseMask = (float) (noise.noise(worldX * 0.12, worldZ * 0.12) * 0.5 + 0.5);
-        if (random.nextFloat() < 0.22f * noiseMask) {
+        float noiseMask = (float) (foliageNoise * 0.5 + 0.5);
+        if (roll < 0.22f * noiseMask) {
             chunk.setBlock(x, plantY, z, Block.TALL_GRASS);
         }
     }
+
+    /** SplitMix64 of the seed, world column and a per-decision salt; the same inputs always give the same bits. */
+    private long columnHash(int worldX, int worldZ, long salt) {
+        long h = mix(seed ^ salt);
+        h = mix(h ^ (worldX & 0xffffffffL));
+        return mix(h ^ (worldZ & 0xffffffffL));
+    }
+
+    /** Uniform in [0, 1), from the top 24 bits of {@link #columnHash}. */
+    private float columnFloat(int worldX, int worldZ, long salt) {
+        return (columnHash(worldX, worldZ, salt) >>> 40) * 0x1.0p-24f;
+    }
+
+    private static long mix(long z) {
+        z += 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
 }
@@ -1,24 +1,76 @@
 package com.glowingmemory.world;
 
 import com.glowingmemory.gfx.Renderer;
+import com.glowingmemory.physics.BlockView;
 import com.glowingmemory.player.Player;
 import com.glowingmemory.util.Log;
+import com.glowingmemory.world.io.ChunkCodec;
+import com.glowingmemory.world.io.ChunkSaver;
+import com.glowingmemory.world.io.LegacyChunkMigrator;
+import com.glowingmemory.world.io.RegionStorage;
+import com.glowingmemory.world.light.LightUpdater;
 import com.glowingmemory.world.mesh.ChunkMesh;
+import com.glowingmemory.world.mesh.ChunkSnapshot;
+import com.glowingmemory.world.mesh.MeshData;
+import com.glowingmemory.world.mesh.MeshUploader;
 import com.glowingmemory.world.mesh.Mesher;
+import com.glowingmemory.world.mesh.SectionVisibility;
 import org.joml.Vector3f;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+public class World implements BlockView, Raycaster.BlockSource {
+    private static final int MAX_MESH_UPLOADS_PER_FRAME = 8;
+    private static final long AUTOSAVE_INTERVAL_NANOS = 30_000_000_000L;
+    private static final int AUTOSAVE_CHUNKS_PER_FRAME = 4;
+    private static final int UNLOAD_HYSTERESIS = 2;
+    private static final int MAX_VIEW_DISTANCE = 32;
+    // Chunks beyond this many rings are meshed at half resolution; each doubling of the distance halves it again.
+    private static final int LOD_RADIUS = Integer.getInteger("glowingmemory.lodRadius", 4);
+    // Down-sampled meshes are lit as open sky, so only chunks this close, whose full-detail neighbors read their
+    // light at the borders, are lit; the light of chunks that fall back past the hysteresis is dropped again.
+    private static final int LIGHT_RADIUS = LOD_RADIUS + 1;
+    private static final long CHUNK_CACHE_BYTES = Integer.getInteger("glowingmemory.chunkCacheMB", 64) * 1024L * 1024L;
+    private static final int MAX_MESH_BUILDS_PER_FRAME = 4 * (ForkJoinPool.getCommonPoolParallelism() + 1);
 
-public class World {
     private final Renderer renderer;
-    private final Map<Long, Chunk> chunks = new HashMap<>();
+    private final ChunkMap chunks = new ChunkMap();
+    // Lookups from the main thread; other threads use ChunkMap.get or a cursor of their own.
+    private final ChunkMap.Cursor lookup = chunks.cursor();
+    private final ChunkCache cache = new ChunkCache(CHUNK_CACHE_BYTES);
     private final TerrainGenerator generator = new TerrainGenerator(42L);
+    private final ChunkPipeline pipeline = new ChunkPipeline(this::loadOrGenerate);
+    private final List<Chunk> meshQueue = new ArrayList<>();
+    private final List<Chunk> uploadQueue = new ArrayList<>();
+    private final Consumer<Chunk> chunkLoaded = this::addChunk;
+    // Chunk the player stands in during the current update; queued work is sorted nearest first from it.
+    private int centerX;
+    private int centerZ;
+    private final Comparator<Chunk> nearestFirst = Comparator.comparingInt(c -> distanceSq(c, centerX, centerZ));
+    // Jobs and snapshot buffers for the batched builds of one frame, created on first use.
+    private final MeshJob[] meshJobs = new MeshJob[MAX_MESH_BUILDS_PER_FRAME];
+    // Job for the immediate rebuilds after an edit.
+    private final MeshJob editJob = new MeshJob();
+    private final List<MeshJob> meshBatch = new ArrayList<>(MAX_MESH_BUILDS_PER_FRAME);
+    private final LightUpdater lighting = new LightUpdater(this::getLoadedChunk, this::lightChanged, pipeline::submit);
+    private int[] loadOffsets = new int[0];
+    private int loadOffsetsRadius = -1;
     private int viewDistance = 4;
     private boolean wireframe = false;
+    private Mesher.Mode meshingMode = Mesher.Mode.GREEDY;
     private final Path saveDir = Path.of("saves");
+    private final RegionStorage regions = new RegionStorage(saveDir.resolve("region"));
+    private final ChunkSaver saver = new ChunkSaver(regions);
+    private final List<Chunk> autosaveQueue = new ArrayList<>();
+    private long nextAutosave = System.nanoTime() + AUTOSAVE_INTERVAL_NANOS;
 
     public World(Renderer renderer) {
         this.renderer = renderer;
@@ -28,6 +80,7 @@ public class World {
         try {
             Files.createDirectories(saveDir);
             Log.info("World save directory ensured at " + saveDir.toAbsolutePath());
+            LegacyChunkMigrator.migrate(saveDir, regions);
         } catch (IOException e) {
             Log.error("Failed to create save directory", e);
             throw new RuntimeException(e);
@@ -38,213 +91,446 @@ public class World {
         Vector3f pos = player.getCamera().getPosition();
         int chunkX = (int) Math.floor(pos.x / Chunk.SIZE);
         int chunkZ = (int) Math.floor(pos.z / Chunk.SIZE);
-        for (int x = -viewDistance; x <= viewDistance; x++) {
-            for (int z = -viewDistance; z <= viewDistance; z++) {
-                getOrCreateChunk(chunkX + x, chunkZ + z);
+        centerX = chunkX;
+        centerZ = chunkZ;
+        pipeline.drainCompleted(chunkLoaded);
+        lighting.update();
+
+        // One ring past the view distance is loaded so that edge chunks have all neighbors for meshing.
+        int loadRadius = viewDistance + 1;
+        unloadOutside(chunkX, chunkZ, loadRadius + UNLOAD_HYSTERESIS);
+        int[] offsets = getLoadOffsets(loadRadius);
+        for (int i = 0; i < offsets.length; i += 2) {
+            int x = chunkX + offsets[i];
+            int z = chunkZ + offsets[i + 1];
+            if (!chunks.contains(x, z)) {
+                Chunk cached = cache.take(x, z);
+                if (cached != null) {
+                    // Cached chunks hold no light; like new ones they are lit once they come close enough.
+                    addChunk(cached);
+                } else {
+                    pipeline.request(x, z);
+                }
             }
         }
-        for (Chunk chunk : new ArrayList<>(chunks.values())) {
-            if (chunk.isDirty()) {
-                buildMesh(chunk);
+        pipeline.cancelOutside(chunkX, chunkZ, loadRadius + 1);
+        remeshDirtyChunks(chunkX, chunkZ);
+        uploadMeshes(chunkX, chunkZ);
+        autosave();
+    }
+
+    private void autosave() {
+        if (autosaveQueue.isEmpty()) {
+            long now = System.nanoTime();
+            if (now - nextAutosave < 0) return;
+            nextAutosave = now + AUTOSAVE_INTERVAL_NANOS;
+            for (int slot = 0; slot < chunks.slotCount(); slot++) {
+                Chunk chunk = chunks.chunkAt(slot);
+                if (chunk != null && chunk.isModified()) autosaveQueue.add(chunk);
             }
+            if (autosaveQueue.isEmpty()) return;
+            Log.info("Autosaving " + autosaveQueue.size() + " modified chunk(s)");
+        }
+        // Spread the snapshots over several frames so a large autosave never stalls one.
+        int count = Math.min(autosaveQueue.size(), AUTOSAVE_CHUNKS_PER_FRAME);
+        for (int i = 0; i < count; i++) {
+            Chunk chunk = autosaveQueue.remove(autosaveQueue.size() - 1);
+            if (chunk.isModified()) saveChunk(chunk);
         }
     }
 
-    private void buildMesh(Chunk chunk) {
-        ChunkMesh old = chunk.getMesh();
-        if (old != null) old.destroy();
-        ChunkMesh mesh = Mesher.buildMesh(chunk, (x, y, z) -> getBlock(chunk, x, y, z));
-        chunk.setMesh(mesh);
-        chunk.clean();
+    private void addChunk(Chunk chunk) {
+        chunks.putIfAbsent(chunk);
     }
 
-    private Block getBlock(Chunk chunk, int x, int y, int z) {
-        if (y < 0 || y >= Chunk.HEIGHT) return Block.AIR;
+    private void lightChanged(Chunk chunk, int y) {
+        if (chunk.getLod() == 0) chunk.markBlockDirty(y);
+    }
 
-        int neighborChunkX = chunk.getChunkX();
-        int neighborChunkZ = chunk.getChunkZ();
+    /** Moves chunks beyond {@code radius} into the cache, saving edited ones and freeing their meshes. */
+    private void unloadOutside(int chunkX, int chunkZ, int radius) {
+        for (int slot = 0; slot < chunks.slotCount(); slot++) {
+            Chunk chunk = chunks.chunkAt(slot);
+            if (chunk == null) continue;
+            if (Math.abs(chunk.getChunkX() - chunkX) <= radius && Math.abs(chunk.getChunkZ() - chunkZ) <= radius) {
+                continue;
+            }
+            if (chunk.isModified()) saveChunk(chunk);
+            chunk.releaseMeshes();
+            chunk.releaseLight();
+            chunks.remove(chunk.getChunkX(), chunk.getChunkZ());
+            cache.put(chunk);
+        }
+    }
 
-        if (x < 0) {
-            neighborChunkX -= 1;
-            x += Chunk.SIZE;
-        } else if (x >= Chunk.SIZE) {
-            neighborChunkX += 1;
-            x -= Chunk.SIZE;
+    private void remeshDirtyChunks(int chunkX, int chunkZ) {
+        meshQueue.clear();
+        for (int slot = 0; slot < chunks.slotCount(); slot++) {
+            Chunk chunk = chunks.chunkAt(slot);
+            if (chunk == null) continue;
+            int distance = Math.max(Math.abs(chunk.getChunkX() - chunkX), Math.abs(chunk.getChunkZ() - chunkZ));
+            if (distance <= LIGHT_RADIUS) {
+                if (!chunk.hasLight() && !chunk.isLightPending()) lighting.light(chunk);
+            } else if (distance > LIGHT_RADIUS + UNLOAD_HYSTERESIS && chunk.hasLight() && !chunk.isLightPending()) {
+                chunk.releaseLight();
+            }
+            if (distance > viewDistance) continue;
+            int lod = lodForDistance(distance);
+            if (lod != chunk.getLod()) {
+                chunk.setLod(lod);
+                chunk.markDirty();
+            }
+            if (chunk.isDirty() && hasAllNeighbors(chunk) && (lod > 0 || hasLightAround(chunk))) {
+                meshQueue.add(chunk);
+            }
+        }
+        if (meshQueue.isEmpty()) return;
+        meshQueue.sort(nearestFirst);
+        int count = Math.min(meshQueue.size(), MAX_MESH_BUILDS_PER_FRAME);
+        meshBatch.clear();
+        for (int i = 0; i < count; i++) {
+            if (meshJobs[i] == null) meshJobs[i] = new MeshJob();
+            MeshJob job = meshJobs[i];
+            job.reinitialize();
+            Chunk chunk = meshQueue.get(i);
+            meshBatch.add(prepareMesh(job, chunk, chunk.getDirtySections()));
+        }
+        // Runs on the fork-join common pool. Workers read only their snapshots, never the live chunks.
+        ForkJoinTask.invokeAll(meshBatch);
+        for (int i = 0; i < count; i++) {
+            MeshJob job = meshBatch.get(i);
+            MeshData[] data = finishMesh(job);
+            for (int section = 0; section < data.length; section++) {
+                if (data[section] != null) job.chunk.setPendingMesh(section, data[section]);
+            }
+            job.chunk.clean(Chunk.ALL_SECTIONS);
+            job.chunk = null;
         }
+        meshBatch.clear();
+        meshQueue.clear();
+    }
 
-        if (z < 0) {
-            neighborChunkZ -= 1;
-            z += Chunk.SIZE;
-        } else if (z >= Chunk.SIZE) {
-            neighborChunkZ += 1;
-            z -= Chunk.SIZE;
+    private void uploadMeshes(int chunkX, int chunkZ) {
+        uploadQueue.clear();
+        for (int slot = 0; slot < chunks.slotCount(); slot++) {
+            Chunk chunk = chunks.chunkAt(slot);
+            if (chunk != null && chunk.hasPendingMeshes()) {
+                uploadQueue.add(chunk);
+            }
         }
+        if (uploadQueue.isEmpty()) return;
+        uploadQueue.sort(nearestFirst);
+        int count = Math.min(uploadQueue.size(), MAX_MESH_UPLOADS_PER_FRAME);
+        for (int i = 0; i < count; i++) {
+            Chunk chunk = uploadQueue.get(i);
+            for (int section = 0; section < Chunk.SECTION_COUNT; section++) {
+                MeshData data = chunk.getPendingMesh(section);
+                if (data == null) continue;
+                chunk.setPendingMesh(section, null);
+                replaceMesh(chunk, section, data);
+            }
+        }
+        uploadQueue.clear();
+    }
 
-        if (neighborChunkX != chunk.getChunkX() || neighborChunkZ != chunk.getChunkZ()) {
-            Chunk neighbor = getLoadedChunk(neighborChunkX, neighborChunkZ);
-            return neighbor != null ? neighbor.getBlock(x, y, z) : Block.AIR;
+    private static int lodForDistance(int distance) {
+        int lod = 0;
+        for (int limit = LOD_RADIUS; distance > limit && lod < Mesher.MAX_LOD; limit *= 2) {
+            lod++;
         }
+        return lod;
+    }
 
-        return chunk.getBlock(x, y, z);
+    private boolean hasAllNeighbors(Chunk chunk) {
+        int x = chunk.getChunkX();
+        int z = chunk.getChunkZ();
+        return chunks.contains(x + 1, z) && chunks.contains(x - 1, z)
+                && chunks.contains(x, z + 1) && chunks.contains(x, z - 1);
     }
 
-    public Block getBlockGlobal(int x, int y, int z) {
-        int cx = floorDiv(x, Chunk.SIZE);
-        int cz = floorDiv(z, Chunk.SIZE);
-        Chunk chunk = getOrCreateChunk(cx, cz);
-        int lx = mod(x, Chunk.SIZE);
-        int lz = mod(z, Chunk.SIZE);
-        return chunk.getBlock(lx, y, lz);
+    /** True once the chunk and the four neighbors that its full-detail border faces read are lit. */
+    private boolean hasLightAround(Chunk chunk) {
+        int x = chunk.getChunkX();
+        int z = chunk.getChunkZ();
+        return isLit(chunk) && isLit(lookup.get(x + 1, z)) && isLit(lookup.get(x - 1, z))
+                && isLit(lookup.get(x, z + 1)) && isLit(lookup.get(x, z - 1));
     }
 
-    public void setBlock(Vector3f worldPos, Block block) {
-        int x = (int) Math.floor(worldPos.x);
-        int y = (int) Math.floor(worldPos.y);
-        int z = (int) Math.floor(worldPos.z);
-        int cx = floorDiv(x, Chunk.SIZE);
-        int cz = floorDiv(z, Chunk.SIZE);
-        Chunk chunk = getOrCreateChunk(cx, cz);
-        chunk.setBlock(mod(x, Chunk.SIZE), y, mod(z, Chunk.SIZE), block);
-        chunk.clean();
-        buildMesh(chunk);
+    private static boolean isLit(Chunk chunk) {
+        return chunk != null && chunk.hasLight() && !chunk.isLightPending();
     }
 
-    public Vector3f resolveCollision(Vector3f currentPos, Vector3f halfSize, Vector3f target) {
-        Vector3f resolved = new Vector3f(target);
-        if (collides(resolved.x, currentPos.y, currentPos.z, halfSize)) {
-            resolved.x = currentPos.x;
+    private static int distanceSq(Chunk chunk, int chunkX, int chunkZ) {
+        int dx = chunk.getChunkX() - chunkX;
+        int dz = chunk.getChunkZ() - chunkZ;
+        return dx * dx + dz * dz;
+    }
+
+    private int[] getLoadOffsets(int radius) {
+        if (radius == loadOffsetsRadius) return loadOffsets;
+        List<int[]> list = new ArrayList<>();
+        for (int x = -radius; x <= radius; x++) {
+            for (int z = -radius; z <= radius; z++) {
+                list.add(new int[]{x, z});
+            }
         }
-        if (collides(resolved.x, currentPos.y, resolved.z, halfSize)) {
-            resolved.z = currentPos.z;
+        list.sort(Comparator.comparingInt(o -> o[0] * o[0] + o[1] * o[1]));
+        int[] offsets = new int[list.size() * 2];
+        for (int i = 0; i < list.size(); i++) {
+            offsets[i * 2] = list.get(i)[0];
+            offsets[i * 2 + 1] = list.get(i)[1];
         }
-        if (collides(resolved.x, resolved.y, resolved.z, halfSize)) {
-            resolved.y = currentPos.y;
+        loadOffsets = offsets;
+        loadOffsetsRadius = radius;
+        return offsets;
+    }
+
+    private void buildMesh(Chunk chunk) {
+        int dirty = chunk.getDirtySections();
+        MeshJob job = prepareMesh(editJob, chunk, dirty);
+        job.run();
+        MeshData[] data = finishMesh(job);
+        for (int section = 0; section < data.length; section++) {
+            if (data[section] == null) continue;
+            chunk.setPendingMesh(section, null);
+            replaceMesh(chunk, section, data[section]);
         }
-        return resolved;
+        chunk.clean(dirty);
     }
 
-    private boolean collides(float x, float y, float z, Vector3f halfSize) {
-        float halfX = halfSize.x / 2f;
-        float halfY = halfSize.y / 2f;
-        float halfZ = halfSize.z / 2f;
-        int minX = (int) Math.floor(x - halfX);
-        int maxX = (int) Math.floor(x + halfX);
-        int minY = (int) Math.floor(y - halfY);
-        int maxY = (int) Math.floor(y + halfY);
-        int minZ = (int) Math.floor(z - halfZ);
-        int maxZ = (int) Math.floor(z + halfZ);
-        for (int bx = minX; bx <= maxX; bx++) {
-            for (int by = minY; by <= maxY; by++) {
-                for (int bz = minZ; bz <= maxZ; bz++) {
-                    if (getBlockGlobal(bx, by, bz).solid) return true;
-                }
+    /** Snapshots what meshing the given sections needs into {@code job}, reusing its buffers; main thread. */
+    private MeshJob prepareMesh(MeshJob job, Chunk chunk, int sectionMask) {
+        int x = chunk.getChunkX();
+        int z = chunk.getChunkZ();
+        job.snapshot.capture(chunk, chunk.getLod(), getLoadedChunk(x + 1, z),
+                getLoadedChunk(x - 1, z), getLoadedChunk(x, z + 1), getLoadedChunk(x, z - 1));
+        job.chunk = chunk;
+        job.mode = meshingMode;
+        job.sections = sectionMask;
+        job.buried = buriedSections(chunk, sectionMask);
+        return job;
+    }
+
+    /** Stores the section visibility computed by {@code job} on its chunk; main thread. */
+    private MeshData[] finishMesh(MeshJob job) {
+        for (int section = 0; section < Chunk.SECTION_COUNT; section++) {
+            if ((job.buried & (1 << section)) != 0) {
+                job.data[section] = MeshData.EMPTY;
+                job.chunk.setVisibility(section, SectionVisibility.NONE);
+            } else if (job.data[section] != null) {
+                job.chunk.setVisibility(section, job.visibility[section]);
+            }
+        }
+        return job.data;
+    }
+
+    /** Sections that are solid through and through and fully enclosed by solid sections have no visible faces. */
+    private int buriedSections(Chunk chunk, int sectionMask) {
+        Chunk east = getLoadedChunk(chunk.getChunkX() + 1, chunk.getChunkZ());
+        Chunk west = getLoadedChunk(chunk.getChunkX() - 1, chunk.getChunkZ());
+        Chunk south = getLoadedChunk(chunk.getChunkX(), chunk.getChunkZ() + 1);
+        Chunk north = getLoadedChunk(chunk.getChunkX(), chunk.getChunkZ() - 1);
+        if (east == null || west == null || south == null || north == null) return 0;
+        int buried = 0;
+        // The bottom section faces the void below the world, which the mesher treats as air.
+        for (int section = 1; section < Chunk.SECTION_COUNT - 1; section++) {
+            if ((sectionMask & (1 << section)) == 0) continue;
+            if (chunk.isSectionOccluding(section)
+                    && chunk.isSectionOccluding(section - 1) && chunk.isSectionOccluding(section + 1)
+                    && east.isSectionOccluding(section) && west.isSectionOccluding(section)
+                    && south.isSectionOccluding(section) && north.isSectionOccluding(section)) {
+                buried |= 1 << section;
             }
         }
-        return false;
+        return buried;
     }
 
-    public Chunk getOrCreateChunk(int x, int z) {
-        long key = (((long) x) << 32) ^ (z & 0xffffffffL);
-        return chunks.computeIfAbsent(key, k -> loadOrGenerate(x, z));
+    private void replaceMesh(Chunk chunk, int section, MeshData data) {
+        ChunkMesh old = chunk.getMesh(section);
+        if (old != null) old.destroy();
+        chunk.setMesh(section, MeshUploader.upload(renderer.getVertexArena(), data));
+    }
+
+    /** The block at world coordinates if its chunk is loaded, otherwise null; never loads or generates. */
+    @Override
+    public Block getBlock(int x, int y, int z) {
+        Chunk chunk = lookup.get(floorDiv(x, Chunk.SIZE), floorDiv(z, Chunk.SIZE));
+        if (chunk == null) return null;
+        return chunk.getBlock(mod(x, Chunk.SIZE), y, mod(z, Chunk.SIZE));
+    }
+
+    /** Copies the loaded chunks covering blocks {@code minX..maxX}, {@code minZ..maxZ} for off-thread queries. */
+    public BlockSnapshot snapshot(int minX, int minZ, int maxX, int maxZ) {
+        return BlockSnapshot.capture(chunks, minX, minZ, maxX, maxZ);
+    }
+
+    /**
+     * Edits a loaded chunk; returns false without doing anything if the chunk is not loaded, since loading or
+     * generating it here would stall the main thread.
+     */
+    public boolean setBlock(int x, int y, int z, Block block) {
+        if (y < 0 || y >= Chunk.HEIGHT) return false;
+        int cx = floorDiv(x, Chunk.SIZE);
+        int cz = floorDiv(z, Chunk.SIZE);
+        Chunk chunk = getLoadedChunk(cx, cz);
+        if (chunk == null) return false;
+        int lx = mod(x, Chunk.SIZE);
+        int lz = mod(z, Chunk.SIZE);
+        int previousId = chunk.getBlockId(lx, y, lz);
+        chunk.setBlock(lx, y, lz, block);
+        chunk.markModified();
+        // The new light follows a frame or two later, through the regular remesh of the chunks it reaches.
+        lighting.blockChanged(x, y, z, previousId, block.ordinal());
+        buildMesh(chunk);
+        if (lx == 0) remeshNeighbor(cx - 1, cz, y);
+        if (lx == Chunk.SIZE - 1) remeshNeighbor(cx + 1, cz, y);
+        if (lz == 0) remeshNeighbor(cx, cz - 1, y);
+        if (lz == Chunk.SIZE - 1) remeshNeighbor(cx, cz + 1, y);
+        return true;
+    }
+
+    private void remeshNeighbor(int cx, int cz, int y) {
+        Chunk neighbor = getLoadedChunk(cx, cz);
+        if (neighbor == null) return;
+        boolean queued = neighbor.isDirty();
+        neighbor.markSectionDirty(y >> 4);
+        if (!queued) buildMesh(neighbor);
+    }
+
+    /**
+     * Collision view of the loaded world. Unloaded chunks count as solid, so bodies wait at the edge of the
+     * loaded area instead of falling through it or forcing it to generate.
+     */
+    @Override
+    public boolean isSolid(int x, int y, int z) {
+        Block block = getBlock(x, y, z);
+        return block == null ? y >= 0 && y < Chunk.HEIGHT : block.solid;
     }
 
     private Chunk getLoadedChunk(int x, int z) {
-        long key = (((long) x) << 32) ^ (z & 0xffffffffL);
-        return chunks.get(key);
+        return lookup.get(x, z);
     }
 
     private Chunk loadOrGenerate(int x, int z) {
         Chunk chunk = loadChunk(x, z);
-        if (chunk != null) return chunk;
-        chunk = new Chunk(x, z);
-        generator.generate(chunk);
-        Log.info("Generated new chunk at (" + x + ", " + z + ")");
-        chunk.markDirty();
-        saveChunk(chunk);
+        if (chunk == null) {
+            chunk = new Chunk(x, z);
+            generator.generate(chunk);
+            Log.info("Generated new chunk at (" + x + ", " + z + ")");
+        }
         return chunk;
     }
 
-    public Collection<Chunk> getChunksToRender(Vector3f cameraPos) {
-        List<Chunk> list = new ArrayList<>();
+    /** Adds the loaded chunks within view distance of the camera to {@code out}. */
+    public void getChunksToRender(Vector3f cameraPos, List<Chunk> out) {
         int cx = (int) Math.floor(cameraPos.x / Chunk.SIZE);
         int cz = (int) Math.floor(cameraPos.z / Chunk.SIZE);
-        for (Chunk chunk : chunks.values()) {
+        for (int slot = 0; slot < chunks.slotCount(); slot++) {
+            Chunk chunk = chunks.chunkAt(slot);
+            if (chunk == null) continue;
             int dx = chunk.getChunkX() - cx;
             int dz = chunk.getChunkZ() - cz;
             if (Math.abs(dx) <= viewDistance && Math.abs(dz) <= viewDistance) {
-                list.add(chunk);
+                out.add(chunk);
             }
         }
-        return list;
     }
 
-    public void saveAll() {
-        for (Chunk chunk : chunks.values()) {
-            saveChunk(chunk);
+    public void shutdown() {
+        pipeline.shutdown();
+        saveModified();
+        for (Chunk chunk : chunks) {
+            chunk.releaseMeshes();
         }
+        saver.close();
+        regions.close();
     }
 
-    private void saveChunk(Chunk chunk) {
-        Path file = saveDir.resolve(chunk.getChunkX() + "_" + chunk.getChunkZ() + ".chk");
-        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
-            for (Block block : chunk.getBlocks()) {
-                out.writeByte(block.ordinal());
+    public void saveModified() {
+        int count = 0;
+        for (Chunk chunk : chunks) {
+            if (chunk.isModified()) {
+                saveChunk(chunk);
+                count++;
             }
-            Log.info("Saved chunk to " + file.toAbsolutePath());
-        } catch (IOException e) {
-            Log.error("Failed to save chunk at (" + chunk.getChunkX() + ", " + chunk.getChunkZ() + ")", e);
         }
+        autosaveQueue.clear();
+        Log.info("Queued " + count + " modified chunk(s) for saving");
     }
 
-    private Chunk loadChunk(int x, int z) {
-        Path file = saveDir.resolve(x + "_" + z + ".chk");
-        if (!Files.exists(file)) return null;
-        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
-            int expectedSize = Chunk.SIZE * Chunk.SIZE * Chunk.HEIGHT;
-            if (Files.size(file) != expectedSize) {
-                Log.warn("Corrupted chunk file (unexpected size), regenerating: " + file.toAbsolutePath());
-                Files.deleteIfExists(file);
-                return null;
-            }
+    private void saveChunk(Chunk chunk) {
+        saver.submit(chunk.getChunkX(), chunk.getChunkZ(), ChunkCodec.encode(chunk));
+        chunk.clearModified();
+    }
 
-            Chunk chunk = new Chunk(x, z);
-            for (int i = 0; i < chunk.getBlocks().length; i++) {
-                byte id = in.readByte();
-                chunk.getBlocks()[i] = Block.values()[id];
-            }
-            chunk.markDirty();
-            Log.info("Loaded chunk from " + file.toAbsolutePath());
+    private Chunk loadChunk(int x, int z) {
+        try {
+            ByteBuffer pending = saver.getPending(x, z);
+            Chunk chunk = pending != null ? ChunkCodec.decode(x, z, pending) : regions.readChunk(x, z);
+            if (chunk != null) Log.info("Loaded chunk (" + x + ", " + z + ")");
             return chunk;
-        } catch (EOFException e) {
-            Log.warn("Corrupted chunk file (unexpected end of file), regenerating: " + file.toAbsolutePath());
-            try {
-                Files.deleteIfExists(file);
-            } catch (IOException ex) {
-                Log.error("Failed to delete corrupted chunk file " + file.toAbsolutePath(), ex);
-            }
-            return null;
         } catch (IOException e) {
-            Log.error("Failed to load chunk from " + file.toAbsolutePath(), e);
+            Log.warn("Failed to load chunk (" + x + ", " + z + "), regenerating: " + e.getMessage());
             return null;
         }
     }
 
     private int mod(int x, int m) {
-        int r = x % m;
-        return r < 0 ? r + m : r;
+        return Math.floorMod(x, m);
     }
 
     private int floorDiv(int x, int m) {
-        return (int) Math.floor((double) x / m);
+        return Math.floorDiv(x, m);
     }
 
+    public int getLoadedChunkCount() { return chunks.size(); }
+
+    public ChunkCache getCache() { return cache; }
+
     public int getViewDistance() { return viewDistance; }
 
     public boolean isWireframe() { return wireframe; }
 
-    public void cycleViewDistance() { viewDistance = viewDistance >= 8 ? 2 : viewDistance + 1; }
+    public void cycleViewDistance() {
+        if (viewDistance >= MAX_VIEW_DISTANCE) viewDistance = 2;
+        else viewDistance = viewDistance < 8 ? viewDistance + 1 : Math.min(viewDistance * 2, MAX_VIEW_DISTANCE);
+    }
 
     public void toggleWireframe() { wireframe = !wireframe; }
 
+    public Mesher.Mode getMeshingMode() { return meshingMode; }
+
+    public void toggleMeshingMode() {
+        meshingMode = meshingMode == Mesher.Mode.GREEDY ? Mesher.Mode.NAIVE : Mesher.Mode.GREEDY;
+        for (Chunk chunk : chunks) {
+            chunk.markDirty();
+        }
+        Log.info("Meshing mode set to " + meshingMode);
+    }
+
     public Renderer getRenderer() { return renderer; }
+
+    /**
+     * One mesh build; reused frame after frame together with its snapshot and result buffers, and forked to
+     * the common pool directly so dispatching a batch allocates nothing.
+     */
+    @SuppressWarnings("serial")
+    private static final class MeshJob extends RecursiveAction {
+        final ChunkSnapshot snapshot = new ChunkSnapshot();
+        final int[] visibility = new int[Chunk.SECTION_COUNT];
+        final MeshData[] data = new MeshData[Chunk.SECTION_COUNT];
+        Chunk chunk;
+        Mesher.Mode mode;
+        int sections;
+        int buried;
+
+        @Override
+        protected void compute() {
+            run();
+        }
+
+        void run() {
+            Mesher.buildSectionMeshes(snapshot, mode, sections & ~buried, data, visibility);
+        }
+    }
 }
@@ -0,0 +1,185 @@
+package com.glowingmemory.world.io;
+
+import com.glowingmemory.world.Block;
+import com.glowingmemory.world.BlockStorage;
+import com.glowingmemory.world.Chunk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Serialized chunk layout: one version byte, one compression byte, the heightmap as one unsigned byte
+ * per column (z-major, since version 2), then the block ids in y, z, x order, either raw or as
+ * run-length pairs of (id byte, run length - 1 as an unsigned short). Encoding and decoding work section
+ * by section, so uniform sections never expand to 4096 bytes. Version 1 payloads have no heightmap; it is
+ * rebuilt from the blocks.
+ */
+public final class ChunkCodec {
+    public static final int VERSION = 2;
+    private static final int COLUMNS = Chunk.SIZE * Chunk.SIZE;
+    public static final int COMPRESSION_RAW = 0;
+    public static final int COMPRESSION_RLE = 1;
+    private static final int MAX_RUN = 65536;
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[BlockStorage.VOLUME]);
+
+    private ChunkCodec() {}
+
+    /** Encodes the chunk into a buffer that is flipped and ready to write. */
+    public static ByteBuffer encode(Chunk chunk) {
+        byte[] heights = new byte[COLUMNS];
+        for (int z = 0; z < Chunk.SIZE; z++) {
+            for (int x = 0; x < Chunk.SIZE; x++) {
+                heights[z * Chunk.SIZE + x] = (byte) chunk.getHeight(x, z);
+            }
+        }
+        Encoder encoder = new Encoder(heights);
+        byte[] scratch = SCRATCH.get();
+        for (int section = 0; section < Chunk.SECTION_COUNT; section++) {
+            int uniform = chunk.getSectionUniformId(section);
+            if (uniform >= 0) {
+                encoder.add((byte) uniform, BlockStorage.VOLUME);
+            } else {
+                chunk.copySectionIds(section, scratch, 0);
+                encoder.addAll(scratch, 0, BlockStorage.VOLUME);
+            }
+        }
+        return encoder.finish();
+    }
+
+    public static ByteBuffer encode(byte[] ids) {
+        byte[] heights = new byte[COLUMNS];
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != 0) heights[i % COLUMNS] = (byte) (i / COLUMNS + 1);
+        }
+        Encoder encoder = new Encoder(heights);
+        encoder.addAll(ids, 0, ids.length);
+        return encoder.finish();
+    }
+
+    /** Decodes a payload positioned at its version byte directly into a new chunk's section storage. */
+    public static Chunk decode(int x, int z, ByteBuffer data) throws IOException {
+        if (data.remaining() < 2) throw new IOException("Chunk payload too short");
+        int version = data.get() & 0xFF;
+        if (version != 1 && version != VERSION) throw new IOException("Unsupported chunk version " + version);
+        int compression = data.get() & 0xFF;
+        short[] heights = null;
+        if (version >= 2) {
+            if (data.remaining() < COLUMNS) throw new IOException("Chunk heightmap truncated");
+            heights = new short[COLUMNS];
+            for (int i = 0; i < COLUMNS; i++) {
+                heights[i] = (short) (data.get() & 0xFF);
+                if (heights[i] > Chunk.HEIGHT) throw new IOException("Chunk heightmap out of range");
+            }
+        }
+        Chunk chunk = new Chunk(x, z);
+        byte[] scratch = SCRATCH.get();
+        if (compression == COMPRESSION_RAW) {
+            if (data.remaining() != Chunk.VOLUME) throw new IOException("Raw chunk payload has wrong size");
+            for (int section = 0; section < Chunk.SECTION_COUNT; section++) {
+                data.get(scratch, 0, BlockStorage.VOLUME);
+                for (int i = 0; i < BlockStorage.VOLUME; i++) {
+                    checkId(scratch[i]);
+                }
+                chunk.setSectionIds(section, scratch, 0);
+            }
+        } else if (compression == COMPRESSION_RLE) {
+            decodeRuns(chunk, data, scratch);
+        } else {
+            throw new IOException("Unknown chunk compression " + compression);
+        }
+        if (heights != null) {
+            chunk.setHeightmap(heights);
+        } else {
+            chunk.rebuildHeightmap();
+        }
+        return chunk;
+    }
+
+    private static void decodeRuns(Chunk chunk, ByteBuffer data, byte[] scratch) throws IOException {
+        int section = 0;
+        int pos = 0;
+        boolean mixed = false;
+        while (data.remaining() >= 3) {
+            byte id = data.get();
+            checkId(id);
+            int run = (data.getShort() & 0xFFFF) + 1;
+            while (run > 0) {
+                if (section >= Chunk.SECTION_COUNT) throw new IOException("Run-length data overflows chunk");
+                int take = Math.min(run, BlockStorage.VOLUME - pos);
+                if (pos == 0 && take == BlockStorage.VOLUME) {
+                    chunk.fillSection(section, id & 0xFF);
+                } else {
+                    Arrays.fill(scratch, pos, pos + take, id);
+                    mixed = true;
+                }
+                pos += take;
+                run -= take;
+                if (pos == BlockStorage.VOLUME) {
+                    if (mixed) chunk.setSectionIds(section, scratch, 0);
+                    section++;
+                    pos = 0;
+                    mixed = false;
+                }
+            }
+        }
+        if (section != Chunk.SECTION_COUNT || data.hasRemaining()) {
+            throw new IOException("Run-length data does not cover the chunk");
+        }
+    }
+
+    private static void checkId(byte id) throws IOException {
+        if ((id & 0xFF) >= Block.count()) throw new IOException("Unknown block id " + (id & 0xFF));
+    }
+
+    private static final class Encoder {
+        private ByteBuffer out = ByteBuffer.allocate(4096);
+        private byte runId;
+        private int runLength;
+
+        Encoder(byte[] heights) {
+            out.put((byte) VERSION);
+            out.put((byte) COMPRESSION_RLE);
+            out.put(heights);
+        }
+
+        void addAll(byte[] ids, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                add(ids[i], 1);
+            }
+        }
+
+        void add(byte id, int count) {
+            if (runLength > 0 && id != runId) flushRun();
+            runId = id;
+            runLength += count;
+            while (runLength > MAX_RUN) {
+                writeRun(runId, MAX_RUN);
+                runLength -= MAX_RUN;
+            }
+        }
+
+        ByteBuffer finish() {
+            flushRun();
+            out.flip();
+            return out;
+        }
+
+        private void flushRun() {
+            if (runLength > 0) writeRun(runId, runLength);
+            runLength = 0;
+        }
+
+        private void writeRun(byte id, int length) {
+            if (out.remaining() < 3) {
+                ByteBuffer grown = ByteBuffer.allocate(out.capacity() * 2);
+                out.flip();
+                grown.put(out);
+                out = grown;
+            }
+            out.put(id);
+            out.putShort((short) (length - 1));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.glowingmemory.world.io;
+
+import com.glowingmemory.util.Log;
+import com.glowingmemory.world.Chunk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Write-behind queue in front of {@link RegionStorage}. Snapshots are encoded on the main thread and written
+ * by a single background thread; a chunk resubmitted before its write starts only keeps the newest snapshot.
+ */
+public class ChunkSaver implements AutoCloseable {
+    private final RegionStorage storage;
+    private final Map<Long, ByteBuffer> queue = new LinkedHashMap<>();
+    private final Thread thread;
+    private long inFlightKey;
+    private ByteBuffer inFlight;
+    private boolean closed;
+
+    public ChunkSaver(RegionStorage storage) {
+        this.storage = storage;
+        this.thread = new Thread(this::run, "chunk-saver");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void submit(int chunkX, int chunkZ, ByteBuffer data) {
+        if (closed) throw new IllegalStateException("Chunk saver is closed");
+        queue.put(Chunk.key(chunkX, chunkZ), data);
+        notifyAll();
+    }
+
+    /** The newest snapshot that has not reached the region file yet, or null. */
+    public synchronized ByteBuffer getPending(int chunkX, int chunkZ) {
+        long key = Chunk.key(chunkX, chunkZ);
+        ByteBuffer data = queue.get(key);
+        if (data == null && inFlight != null && inFlightKey == key) data = inFlight;
+        return data != null ? data.duplicate() : null;
+    }
+
+    public synchronized int getQueuedCount() {
+        return queue.size() + (inFlight != null ? 1 : 0);
+    }
+
+    private void run() {
+        while (true) {
+            long key;
+            ByteBuffer data;
+            synchronized (this) {
+                while (queue.isEmpty() && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (queue.isEmpty()) return;
+                Iterator<Map.Entry<Long, ByteBuffer>> it = queue.entrySet().iterator();
+                Map.Entry<Long, ByteBuffer> next = it.next();
+                it.remove();
+                key = next.getKey();
+                data = next.getValue();
+                inFlightKey = key;
+                inFlight = data;
+            }
+            try {
+                storage.write(Chunk.keyX(key), Chunk.keyZ(key), data.duplicate());
+            } catch (IOException e) {
+                Log.error("Failed to save chunk at (" + Chunk.keyX(key) + ", " + Chunk.keyZ(key) + ")", e);
+            }
+            synchronized (this) {
+                inFlight = null;
+                notifyAll();
+            }
+        }
+    }
+
+    public synchronized void flush() {
+        while (!queue.isEmpty() || inFlight != null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.glowingmemory.world.io;
+
+import com.glowingmemory.util.Log;
+import com.glowingmemory.world.Block;
+import com.glowingmemory.world.Chunk;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Moves the old one-file-per-chunk {@code x_z.chk} saves (raw block ids) into region files and deletes them.
+ */
+public final class LegacyChunkMigrator {
+    private LegacyChunkMigrator() {}
+
+    public static void migrate(Path saveDir, RegionStorage storage) {
+        int migrated = 0;
+        int skipped = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(saveDir, "*.chk")) {
+            for (Path file : files) {
+                if (migrateFile(file, storage)) migrated++;
+                else skipped++;
+            }
+        } catch (IOException e) {
+            Log.error("Failed to scan " + saveDir.toAbsolutePath() + " for legacy chunk files", e);
+        }
+        if (migrated + skipped > 0) {
+            Log.info("Migrated " + migrated + " legacy chunk file(s) to region files, skipped " + skipped);
+        }
+    }
+
+    private static boolean migrateFile(Path file, RegionStorage storage) {
+        String name = file.getFileName().toString();
+        String[] parts = name.substring(0, name.length() - ".chk".length()).split("_");
+        try {
+            byte[] ids = Files.readAllBytes(file);
+            if (parts.length != 2 || !isInteger(parts[0]) || !isInteger(parts[1]) || !isValid(ids)) {
+                Log.warn("Discarding corrupted legacy chunk file " + file.toAbsolutePath());
+                Files.delete(file);
+                return false;
+            }
+            storage.write(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), ChunkCodec.encode(ids));
+            Files.delete(file);
+            return true;
+        } catch (IOException e) {
+            Log.error("Failed to migrate legacy chunk file " + file.toAbsolutePath(), e);
+            return false;
+        }
+    }
+
+    private static boolean isValid(byte[] ids) {
+        if (ids.length != Chunk.VOLUME) return false;
+        for (byte id : ids) {
+            if ((id & 0xFF) >= Block.count()) return false;
+        }
+        return true;
+    }
+
+    private static boolean isInteger(String s) {
+        return s.matches("-?\\d+");
+    }
+}
@@ -0,0 +1,145 @@
+package com.glowingmemory.world.io;
+
+import com.glowingmemory.world.Chunk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Holds the chunks of one 32x32 region in 4 KB sectors. Sector 0 is the offset table: one int per chunk,
+ * {@code sectorOffset << 8 | sectorCount}, zero when the chunk was never written. Each stored chunk starts
+ * with its payload length as an int. Reads decode straight out of a read-only mapping of the file; writes
+ * go through the channel in one call per chunk.
+ */
+public class RegionFile implements Closeable {
+    public static final int CHUNKS = 32;
+    public static final int SECTOR_BYTES = 4096;
+    private static final int HEADER_SECTORS = 1;
+    private static final int MAX_SECTORS_PER_CHUNK = 255;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int[] offsets = new int[CHUNKS * CHUNKS];
+    private final BitSet usedSectors = new BitSet();
+    private final ByteBuffer entryBuffer = ByteBuffer.allocate(Integer.BYTES);
+    private MappedByteBuffer mapped;
+    private int sectorCount;
+
+    public RegionFile(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SECTORS * SECTOR_BYTES);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) <= 0) break;
+        }
+        if (channel.size() < header.capacity()) {
+            channel.write(ByteBuffer.allocate(header.capacity() - (int) channel.size()), channel.size());
+        }
+        sectorCount = (int) ((channel.size() + SECTOR_BYTES - 1) / SECTOR_BYTES);
+        usedSectors.set(0, HEADER_SECTORS);
+        header.flip();
+        for (int i = 0; i < offsets.length && header.remaining() >= Integer.BYTES; i++) {
+            int entry = header.getInt();
+            int start = entry >>> 8;
+            int count = entry & 0xFF;
+            if (entry != 0 && start >= HEADER_SECTORS && start + count <= sectorCount) {
+                offsets[i] = entry;
+                usedSectors.set(start, start + count);
+            }
+        }
+    }
+
+    public synchronized Chunk readChunk(int chunkX, int chunkZ) throws IOException {
+        int entry = offsets[index(chunkX, chunkZ)];
+        if (entry == 0) return null;
+        int start = entry >>> 8;
+        int count = entry & 0xFF;
+        ByteBuffer view = mapping().duplicate();
+        view.position(start * SECTOR_BYTES);
+        int length = view.getInt();
+        if (length <= 0 || length + Integer.BYTES > count * SECTOR_BYTES) {
+            throw new IOException("Bad chunk length " + length + " in " + path);
+        }
+        view.limit(view.position() + length);
+        return ChunkCodec.decode(chunkX, chunkZ, view);
+    }
+
+    /** Writes a payload (position to limit) as the chunk's new contents. */
+    public synchronized void write(int chunkX, int chunkZ, ByteBuffer data) throws IOException {
+        int index = index(chunkX, chunkZ);
+        int length = data.remaining();
+        int needed = (length + Integer.BYTES + SECTOR_BYTES - 1) / SECTOR_BYTES;
+        if (needed > MAX_SECTORS_PER_CHUNK) {
+            throw new IOException("Chunk too large for region file: " + length + " bytes");
+        }
+        int entry = offsets[index];
+        int start = entry >>> 8;
+        int count = entry & 0xFF;
+        if (entry == 0 || needed > count) {
+            if (entry != 0) usedSectors.clear(start, start + count);
+            start = allocate(needed);
+        } else if (needed < count) {
+            usedSectors.clear(start + needed, start + count);
+        }
+        usedSectors.set(start, start + needed);
+
+        ByteBuffer out = ByteBuffer.allocate(needed * SECTOR_BYTES);
+        out.putInt(length);
+        out.put(data);
+        out.flip();
+        writeFully(out, (long) start * SECTOR_BYTES);
+
+        offsets[index] = (start << 8) | needed;
+        entryBuffer.clear();
+        entryBuffer.putInt(offsets[index]).flip();
+        writeFully(entryBuffer, (long) index * Integer.BYTES);
+    }
+
+    public synchronized boolean contains(int chunkX, int chunkZ) {
+        return offsets[index(chunkX, chunkZ)] != 0;
+    }
+
+    private MappedByteBuffer mapping() throws IOException {
+        if (mapped == null) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) sectorCount * SECTOR_BYTES);
+        }
+        return mapped;
+    }
+
+    private int allocate(int needed) {
+        int start = HEADER_SECTORS;
+        while (true) {
+            start = usedSectors.nextClearBit(start);
+            int end = usedSectors.nextSetBit(start);
+            if (end < 0 || end - start >= needed) break;
+            start = end;
+        }
+        if (start + needed > sectorCount) {
+            sectorCount = start + needed;
+            mapped = null;
+        }
+        return start;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static int index(int chunkX, int chunkZ) {
+        return (chunkX & (CHUNKS - 1)) + (chunkZ & (CHUNKS - 1)) * CHUNKS;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mapped = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,72 @@
+package com.glowingmemory.world.io;
+
+import com.glowingmemory.util.Log;
+import com.glowingmemory.world.Chunk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Routes chunk reads and writes to {@code r.<x>.<z>.gmr} region files, keeping a bounded number of them open.
+ * Calls are serialized so a region is never closed under a reader.
+ */
+public class RegionStorage implements AutoCloseable {
+    private static final int MAX_OPEN_REGIONS = 64;
+
+    private final Path dir;
+    private final Map<Long, RegionFile> open = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, RegionFile> eldest) {
+            if (size() <= MAX_OPEN_REGIONS) return false;
+            closeQuietly(eldest.getValue());
+            return true;
+        }
+    };
+
+    public RegionStorage(Path dir) {
+        this.dir = dir;
+    }
+
+    public synchronized Chunk readChunk(int chunkX, int chunkZ) throws IOException {
+        RegionFile region = region(chunkX, chunkZ, false);
+        return region != null ? region.readChunk(chunkX, chunkZ) : null;
+    }
+
+    public synchronized void write(int chunkX, int chunkZ, ByteBuffer data) throws IOException {
+        region(chunkX, chunkZ, true).write(chunkX, chunkZ, data);
+    }
+
+    private RegionFile region(int chunkX, int chunkZ, boolean create) throws IOException {
+        int regionX = Math.floorDiv(chunkX, RegionFile.CHUNKS);
+        int regionZ = Math.floorDiv(chunkZ, RegionFile.CHUNKS);
+        long key = Chunk.key(regionX, regionZ);
+        RegionFile region = open.get(key);
+        if (region != null) return region;
+        Path path = dir.resolve("r." + regionX + "." + regionZ + ".gmr");
+        if (!create && !Files.exists(path)) return null;
+        Files.createDirectories(dir);
+        region = new RegionFile(path);
+        open.put(key, region);
+        return region;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (RegionFile region : open.values()) {
+            closeQuietly(region);
+        }
+        open.clear();
+    }
+
+    private static void closeQuietly(RegionFile region) {
+        try {
+            region.close();
+        } catch (IOException e) {
+            Log.error("Failed to close region file", e);
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.glowingmemory.world.light;
+
+import com.glowingmemory.world.Block;
+import com.glowingmemory.world.Chunk;
+
+import java.util.Arrays;
+
+/**
+ * Flood-fill voxel lighting with two nibble channels per cell. Sky light enters from above the world and
+ * falls straight down at full strength; block light comes from emitters such as lamps. Both lose one level
+ * per step sideways, plus the {@link Block#lightOpacity} of each cell they enter.
+ * <p>
+ * A chunk is first lit on its own by {@link #lightChunk}, which is safe on any thread as long as nobody
+ * else holds the chunk. Once it joins the world, {@link #stitch} lets light flow across its borders, and
+ * {@link #blockChanged} updates the neighborhood of an edit incrementally. Those two read and write the
+ * chunks of their {@link ChunkSource} and report every relit cell to the {@link Listener}; in the game the
+ * {@link LightUpdater} runs them on a worker against copies of the loaded chunks.
+ */
+public class LightEngine {
+    public static final int MAX_LEVEL = 15;
+
+    private static final int SKY = 0;
+    private static final int BLOCK = 1;
+    private static final int[] OPACITY = new int[256];
+    private static final int[] EMISSION = new int[256];
+    private static final int[] DX = {1, -1, 0, 0, 0, 0};
+    private static final int[] DY = {0, 0, 1, -1, 0, 0};
+    private static final int[] DZ = {0, 0, 0, 0, 1, -1};
+    private static final int DOWN = 3;
+    private static final ThreadLocal<IntQueue> LOCAL_QUEUE = ThreadLocal.withInitial(IntQueue::new);
+
+    static {
+        Arrays.fill(OPACITY, MAX_LEVEL);
+        for (int id = 0; id < Block.count(); id++) {
+            OPACITY[id] = Block.byId(id).lightOpacity;
+            EMISSION[id] = Block.byId(id).lightEmission;
+        }
+    }
+
+    private final ChunkSource source;
+    private final Listener listener;
+    private final IntQueue[] addQueues = {new IntQueue(), new IntQueue()};
+    private final IntQueue removeQueue = new IntQueue();
+    private Chunk lastChunk;
+
+    public LightEngine(ChunkSource source, Listener listener) {
+        this.source = source;
+        this.listener = listener;
+    }
+
+    /** Lights {@code chunk} from scratch as if it were surrounded by unloaded chunks. */
+    public static void lightChunk(Chunk chunk) {
+        chunk.initLight();
+        byte[] ids = new byte[Chunk.VOLUME];
+        chunk.copyBlockIds(ids);
+        byte[] sky = chunk.getSkyLightArray();
+        byte[] block = chunk.getBlockLightArray();
+        IntQueue queue = LOCAL_QUEUE.get();
+        queue.clear();
+
+        // Full sky light down every column until something blocks it.
+        int[] skyTop = new int[Chunk.SIZE * Chunk.SIZE];
+        for (int z = 0; z < Chunk.SIZE; z++) {
+            for (int x = 0; x < Chunk.SIZE; x++) {
+                int y = Chunk.HEIGHT - 1;
+                while (y >= 0 && OPACITY[ids[index(x, y, z)] & 0xff] == 0) {
+                    Chunk.setNibble(sky, index(x, y, z), MAX_LEVEL);
+                    y--;
+                }
+                skyTop[z * Chunk.SIZE + x] = y + 1;
+                if (y == Chunk.HEIGHT - 1) {
+                    // A translucent block in the top layer still lets some sky through.
+                    int level = sourceLevel(SKY, ids[index(x, y, z)] & 0xff, y);
+                    if (level > 0) {
+                        Chunk.setNibble(sky, index(x, y, z), level);
+                        queue.add(index(x, y, z));
+                    }
+                }
+            }
+        }
+        // Only lit cells beside a shorter neighbor column, or resting on a translucent block, can spread.
+        for (int z = 0; z < Chunk.SIZE; z++) {
+            for (int x = 0; x < Chunk.SIZE; x++) {
+                int top = skyTop[z * Chunk.SIZE + x];
+                int reach = top + 1;
+                if (x > 0) reach = Math.max(reach, skyTop[z * Chunk.SIZE + x - 1]);
+                if (x < Chunk.SIZE - 1) reach = Math.max(reach, skyTop[z * Chunk.SIZE + x + 1]);
+                if (z > 0) reach = Math.max(reach, skyTop[(z - 1) * Chunk.SIZE + x]);
+                if (z < Chunk.SIZE - 1) reach = Math.max(reach, skyTop[(z + 1) * Chunk.SIZE + x]);
+                for (int y = top; y < Math.min(reach, Chunk.HEIGHT); y++) {
+                    queue.add(index(x, y, z));
+                }
+            }
+        }
+        spreadLocal(queue, ids, sky, true);
+
+        for (int i = 0; i < Chunk.VOLUME; i++) {
+            int emission = EMISSION[ids[i] & 0xff];
+            if (emission > 0) {
+                Chunk.setNibble(block, i, emission);
+                queue.add(i);
+            }
+        }
+        spreadLocal(queue, ids, block, false);
+    }
+
+    private static void spreadLocal(IntQueue queue, byte[] ids, byte[] light, boolean sky) {
+        while (!queue.isEmpty()) {
+            int i = queue.poll();
+            int level = Chunk.getNibble(light, i);
+            int x = i & (Chunk.SIZE - 1);
+            int z = (i >> 4) & (Chunk.SIZE - 1);
+            int y = i >> 8;
+            if (x > 0) spreadLocal(queue, ids, light, i - 1, level - 1);
+            if (x < Chunk.SIZE - 1) spreadLocal(queue, ids, light, i + 1, level - 1);
+            if (z > 0) spreadLocal(queue, ids, light, i - Chunk.SIZE, level - 1);
+            if (z < Chunk.SIZE - 1) spreadLocal(queue, ids, light, i + Chunk.SIZE, level - 1);
+            if (y < Chunk.HEIGHT - 1) spreadLocal(queue, ids, light, i + Chunk.SIZE * Chunk.SIZE, level - 1);
+            if (y > 0) {
+                spreadLocal(queue, ids, light, i - Chunk.SIZE * Chunk.SIZE, sky && level == MAX_LEVEL ? level : level - 1);
+            }
+        }
+    }
+
+    private static void spreadLocal(IntQueue queue, byte[] ids, byte[] light, int i, int level) {
+        level -= OPACITY[ids[i] & 0xff];
+        if (level > Chunk.getNibble(light, i)) {
+            Chunk.setNibble(light, i, level);
+            queue.add(i);
+        }
+    }
+
+    /** Lets light flow between a freshly added, already lit chunk and its loaded neighbors, both ways. */
+    public void stitch(Chunk chunk) {
+        int baseX = chunk.getChunkX() * Chunk.SIZE;
+        int baseZ = chunk.getChunkZ() * Chunk.SIZE;
+        byte[] sky = chunk.getSkyLightArray();
+        byte[] block = chunk.getBlockLightArray();
+        for (int side = 0; side < 4; side++) {
+            int dx = DX[side < 2 ? side : side + 2];
+            int dz = DZ[side < 2 ? side : side + 2];
+            Chunk neighbor = source.getChunk(chunk.getChunkX() + dx, chunk.getChunkZ() + dz);
+            if (neighbor == null || !neighbor.hasLight()) continue;
+            byte[] neighborSky = neighbor.getSkyLightArray();
+            byte[] neighborBlock = neighbor.getBlockLightArray();
+            // Above both heightmaps there is only air under full sky light, so only block light, which may
+            // come from emitters in other chunks, still has to be compared there.
+            int solidTop = Math.min(Chunk.HEIGHT, Math.max(chunk.getMaxHeight(), neighbor.getMaxHeight()) + 1);
+            for (int t = 0; t < Chunk.SIZE; t++) {
+                int ax = dx != 0 ? (dx > 0 ? Chunk.SIZE - 1 : 0) : t;
+                int az = dz != 0 ? (dz > 0 ? Chunk.SIZE - 1 : 0) : t;
+                int bx = (ax + dx) & (Chunk.SIZE - 1);
+                int bz = (az + dz) & (Chunk.SIZE - 1);
+                int x = baseX + ax;
+                int z = baseZ + az;
+                for (int y = 0; y < solidTop; y++) {
+                    int a = index(ax, y, az);
+                    int b = index(bx, y, bz);
+                    int opacityA = OPACITY[chunk.getBlockId(ax, y, az)];
+                    int opacityB = OPACITY[neighbor.getBlockId(bx, y, bz)];
+                    seed(addQueues[SKY], Chunk.getNibble(sky, a), Chunk.getNibble(neighborSky, b),
+                            opacityA, opacityB, x, y, z, dx, dz);
+                    seed(addQueues[BLOCK], Chunk.getNibble(block, a), Chunk.getNibble(neighborBlock, b),
+                            opacityA, opacityB, x, y, z, dx, dz);
+                }
+                for (int y = solidTop; y < Chunk.HEIGHT; y++) {
+                    int a = Chunk.getNibble(block, index(ax, y, az));
+                    int b = Chunk.getNibble(neighborBlock, index(bx, y, bz));
+                    if (a != b) seed(addQueues[BLOCK], a, b, 0, 0, x, y, z, dx, dz);
+                }
+            }
+        }
+        runAdd(SKY);
+        runAdd(BLOCK);
+        lastChunk = null;
+    }
+
+    /** Queues whichever of two facing cells, {@code a} at x, y, z and {@code b} beside it, lights the other. */
+    private static void seed(IntQueue queue, int a, int b, int opacityA, int opacityB,
+                             int x, int y, int z, int dx, int dz) {
+        if (opacityB < MAX_LEVEL && a - 1 - opacityB > b) {
+            queue.add(x, y, z);
+        } else if (opacityA < MAX_LEVEL && b - 1 - opacityA > a) {
+            queue.add(x + dx, y, z + dz);
+        }
+    }
+
+    /** Updates light after the block at the given world position changed; the chunk must be loaded and lit. */
+    public void blockChanged(int x, int y, int z) {
+        Chunk chunk = chunkAt(x, z);
+        if (chunk == null) return;
+        int id = chunk.getBlockId(x & (Chunk.SIZE - 1), y, z & (Chunk.SIZE - 1));
+        for (int channel = SKY; channel <= BLOCK; channel++) {
+            int old = getWorld(x, y, z, channel);
+            if (old > 0) {
+                setWorld(x, y, z, channel, 0);
+                removeQueue.add(x, y, z, old);
+                runRemove(channel);
+            }
+            int source = sourceLevel(channel, id, y);
+            if (source > 0) {
+                setWorld(x, y, z, channel, source);
+                addQueues[channel].add(x, y, z);
+            }
+            // Light around the cell flows back in if it is no longer opaque.
+            for (int dir = 0; dir < 6; dir++) {
+                int nx = x + DX[dir];
+                int ny = y + DY[dir];
+                int nz = z + DZ[dir];
+                if (getWorld(nx, ny, nz, channel) > 0) addQueues[channel].add(nx, ny, nz);
+            }
+            runAdd(channel);
+        }
+        lastChunk = null;
+    }
+
+    /** Light a cell produces by itself: emission for block light, open sky above the top layer for sky light. */
+    private static int sourceLevel(int channel, int id, int y) {
+        if (channel == BLOCK) return EMISSION[id];
+        return y == Chunk.HEIGHT - 1 ? Math.max(0, MAX_LEVEL - OPACITY[id]) : 0;
+    }
+
+    private void runRemove(int channel) {
+        IntQueue adds = addQueues[channel];
+        while (!removeQueue.isEmpty()) {
+            int x = removeQueue.poll();
+            int y = removeQueue.poll();
+            int z = removeQueue.poll();
+            int level = removeQueue.poll();
+            for (int dir = 0; dir < 6; dir++) {
+                int nx = x + DX[dir];
+                int ny = y + DY[dir];
+                int nz = z + DZ[dir];
+                int neighbor = getWorld(nx, ny, nz, channel);
+                if (neighbor <= 0) continue;
+                boolean dependent = neighbor < level || (channel == SKY && dir == DOWN && level == MAX_LEVEL);
+                if (!dependent) {
+                    adds.add(nx, ny, nz);
+                    continue;
+                }
+                setWorld(nx, ny, nz, channel, 0);
+                removeQueue.add(nx, ny, nz, neighbor);
+                int source = sourceLevel(channel, blockId(nx, ny, nz), ny);
+                if (source > 0) {
+                    setWorld(nx, ny, nz, channel, source);
+                    adds.add(nx, ny, nz);
+                }
+            }
+        }
+    }
+
+    private void runAdd(int channel) {
+        IntQueue queue = addQueues[channel];
+        while (!queue.isEmpty()) {
+            int x = queue.poll();
+            int y = queue.poll();
+            int z = queue.poll();
+            int level = getWorld(x, y, z, channel);
+            if (level <= 0) continue;
+            for (int dir = 0; dir < 6; dir++) {
+                int nx = x + DX[dir];
+                int ny = y + DY[dir];
+                int nz = z + DZ[dir];
+                int current = getWorld(nx, ny, nz, channel);
+                if (current < 0) continue;
+                int opacity = OPACITY[blockId(nx, ny, nz)];
+                if (opacity >= MAX_LEVEL) continue;
+                int next = (channel == SKY && dir == DOWN && level == MAX_LEVEL ? level : level - 1) - opacity;
+                if (next > current) {
+                    setWorld(nx, ny, nz, channel, next);
+                    queue.add(nx, ny, nz);
+                }
+            }
+        }
+    }
+
+    /** Light level at a world position, or -1 outside the world or the lit, loaded chunks. */
+    private int getWorld(int x, int y, int z, int channel) {
+        if (y < 0 || y >= Chunk.HEIGHT) return -1;
+        Chunk chunk = chunkAt(x, z);
+        if (chunk == null) return -1;
+        return get(chunk, x & (Chunk.SIZE - 1), y, z & (Chunk.SIZE - 1), channel);
+    }
+
+    private void setWorld(int x, int y, int z, int channel, int level) {
+        Chunk chunk = chunkAt(x, z);
+        int lx = x & (Chunk.SIZE - 1);
+        int lz = z & (Chunk.SIZE - 1);
+        if (channel == SKY) chunk.setSkyLight(lx, y, lz, level);
+        else chunk.setBlockLight(lx, y, lz, level);
+        listener.lightChanged(chunk, y);
+        // Faces of the neighboring chunk that look into this cell carry its light too.
+        if (lx == 0) notifyNeighbor(chunk, -1, 0, y);
+        if (lx == Chunk.SIZE - 1) notifyNeighbor(chunk, 1, 0, y);
+        if (lz == 0) notifyNeighbor(chunk, 0, -1, y);
+        if (lz == Chunk.SIZE - 1) notifyNeighbor(chunk, 0, 1, y);
+    }
+
+    private void notifyNeighbor(Chunk chunk, int dx, int dz, int y) {
+        Chunk neighbor = source.getChunk(chunk.getChunkX() + dx, chunk.getChunkZ() + dz);
+        if (neighbor != null) listener.lightChanged(neighbor, y);
+    }
+
+    private int blockId(int x, int y, int z) {
+        return chunkAt(x, z).getBlockId(x & (Chunk.SIZE - 1), y, z & (Chunk.SIZE - 1));
+    }
+
+    private Chunk chunkAt(int x, int z) {
+        int cx = x >> 4;
+        int cz = z >> 4;
+        Chunk chunk = lastChunk;
+        if (chunk == null || chunk.getChunkX() != cx || chunk.getChunkZ() != cz) {
+            chunk = source.getChunk(cx, cz);
+            if (chunk == null || !chunk.hasLight()) return null;
+            lastChunk = chunk;
+        }
+        return chunk;
+    }
+
+    private static int get(Chunk chunk, int x, int y, int z, int channel) {
+        return channel == SKY ? chunk.getSkyLight(x, y, z) : chunk.getBlockLight(x, y, z);
+    }
+
+    private static int index(int x, int y, int z) {
+        return (y * Chunk.SIZE + z) * Chunk.SIZE + x;
+    }
+
+    public interface ChunkSource {
+        Chunk getChunk(int chunkX, int chunkZ);
+    }
+
+    public interface Listener {
+        /** The light of a cell at height {@code y} in {@code chunk}, or right next to it, changed. */
+        void lightChanged(Chunk chunk, int y);
+    }
+
+    /** Growable FIFO of ints; entries of several ints are pushed and polled together. */
+    private static final class IntQueue {
+        private int[] data = new int[1024];
+        private int head;
+        private int tail;
+
+        void add(int value) {
+            if (tail == data.length) grow(1);
+            data[tail++] = value;
+        }
+
+        void add(int a, int b, int c) {
+            if (tail + 3 > data.length) grow(3);
+            data[tail++] = a;
+            data[tail++] = b;
+            data[tail++] = c;
+        }
+
+        void add(int a, int b, int c, int d) {
+            if (tail + 4 > data.length) grow(4);
+            data[tail++] = a;
+            data[tail++] = b;
+            data[tail++] = c;
+            data[tail++] = d;
+        }
+
+        int poll() {
+            int value = data[head++];
+            if (head == tail) head = tail = 0;
+            return value;
+        }
+
+        boolean isEmpty() {
+            return head == tail;
+        }
+
+        void clear() {
+            head = tail = 0;
+        }
+
+        private void grow(int needed) {
+            int size = tail - head;
+            if (head > 0 && size + needed <= data.length / 2) {
+                System.arraycopy(data, head, data, 0, size);
+            } else {
+                data = Arrays.copyOfRange(data, head, head + Math.max(data.length * 2, size + needed));
+            }
+            head = 0;
+            tail = size;
+        }
+    }
+}
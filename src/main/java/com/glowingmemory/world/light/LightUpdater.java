@@ -0,0 +1,259 @@
+package com.glowingmemory.world.light;
+
+import com.glowingmemory.world.Block;
+import com.glowingmemory.world.Chunk;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lights chunks and runs the {@link LightEngine}'s edit updates off the main thread. The main thread queues
+ * them, and {@link #update} copies the blocks and light of every chunk the next batch can reach: the chunk of
+ * each update and its eight neighbors, since light fades out within one chunk width. A worker relights those
+ * copies; when it is done, the main thread copies the light back into the chunks that are still loaded and
+ * reports every relit cell to the {@link LightEngine.Listener}. Only one batch is out at a time, so the
+ * updates queued meanwhile start from the light it produced.
+ */
+public class LightUpdater {
+    // Each update is x, y, z, previous id, new id; chunks to light have LIGHT as y and the chunk's x and z.
+    private static final int UPDATE_INTS = 5;
+    private static final int LIGHT = -1;
+    // Bounds the copies taken on the main thread per batch, about 9 chunks per scattered update.
+    private static final int MAX_UPDATES_PER_BATCH = 32;
+    private static final int MAX_SPARE_COPIES = 96;
+
+    private final LightEngine.ChunkSource source;
+    private final LightEngine.Listener listener;
+    private final Scheduler scheduler;
+    private final Batch batch = new Batch();
+    private final ArrayDeque<Copy> spare = new ArrayDeque<>();
+    private int[] queued = new int[UPDATE_INTS * MAX_UPDATES_PER_BATCH];
+    private int queuedInts;
+    private boolean running;
+
+    public LightUpdater(LightEngine.ChunkSource source, LightEngine.Listener listener, Scheduler scheduler) {
+        this.source = source;
+        this.listener = listener;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Queues an unlit chunk to be lit from scratch and stitched to its lit neighbors. It stays pending until
+     * then, and the light of its own cells and of the cells next to it is reported as changed.
+     */
+    public void light(Chunk chunk) {
+        chunk.setLightPending(true);
+        queue(chunk.getChunkX(), LIGHT, chunk.getChunkZ(), 0, 0);
+    }
+
+    /** Queues the light update for a block that was just changed from {@code previousId} to {@code id}. */
+    public void blockChanged(int x, int y, int z, int previousId, int id) {
+        queue(x, y, z, previousId, id);
+    }
+
+    private void queue(int a, int b, int c, int d, int e) {
+        if (queuedInts + UPDATE_INTS > queued.length) queued = Arrays.copyOf(queued, queued.length * 2);
+        queued[queuedInts++] = a;
+        queued[queuedInts++] = b;
+        queued[queuedInts++] = c;
+        queued[queuedInts++] = d;
+        queued[queuedInts++] = e;
+    }
+
+    /** Starts the next batch unless one is still out; call once per frame on the main thread. */
+    public void update() {
+        if (running || queuedInts == 0) return;
+        int taken = Math.min(queuedInts, UPDATE_INTS * MAX_UPDATES_PER_BATCH);
+        System.arraycopy(queued, 0, batch.updates, 0, taken);
+        batch.updateInts = taken;
+        for (int i = 0; i < taken; i += UPDATE_INTS) {
+            boolean light = queued[i + 1] == LIGHT;
+            copyAround(light ? queued[i] : queued[i] >> 4, light ? queued[i + 2] : queued[i + 2] >> 4, light);
+        }
+        // The copies already hold every queued edit, including those left for later batches. Undo them all,
+        // newest first; the batch redoes its own in order.
+        for (int i = queuedInts - UPDATE_INTS; i >= 0; i -= UPDATE_INTS) {
+            int y = queued[i + 1];
+            if (y == LIGHT) continue;
+            Copy copy = batch.copies.get(Chunk.key(queued[i] >> 4, queued[i + 2] >> 4));
+            if (copy != null) {
+                copy.blocks.setBlock(queued[i] & (Chunk.SIZE - 1), y, queued[i + 2] & (Chunk.SIZE - 1),
+                        Block.byId(queued[i + 3]));
+            }
+        }
+        queuedInts -= taken;
+        System.arraycopy(queued, taken, queued, 0, queuedInts);
+        running = true;
+        scheduler.submit(batch, batch.finish);
+    }
+
+    /** Copies the lit chunks around chunkX, chunkZ, and with {@code center} the chunk there even if unlit. */
+    private void copyAround(int chunkX, int chunkZ, boolean center) {
+        for (int dz = -1; dz <= 1; dz++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                long key = Chunk.key(chunkX + dx, chunkZ + dz);
+                if (batch.copies.containsKey(key)) continue;
+                Chunk chunk = source.getChunk(chunkX + dx, chunkZ + dz);
+                if (chunk == null || !chunk.hasLight() && !(center && dx == 0 && dz == 0)) continue;
+                Copy copy = spare.isEmpty() ? new Copy() : spare.poll();
+                copy.capture(chunk);
+                batch.copies.put(key, copy);
+            }
+        }
+    }
+
+    /** Applies a finished batch on the main thread, skipping chunks unloaded or relit since it was copied. */
+    private void finish() {
+        running = false;
+        for (Copy copy : batch.copies.values()) {
+            Chunk chunk = copy.live;
+            copy.current = source.getChunk(chunk.getChunkX(), chunk.getChunkZ()) == chunk
+                    && chunk.getSkyLightArray() == copy.liveSky;
+            if (copy.current && batch.complete) copy.apply(listener);
+        }
+        // After a failure the chunks stay unlit and may be queued again.
+        for (int i = 0; i < batch.updateInts; i += UPDATE_INTS) {
+            if (batch.updates[i + 1] != LIGHT) continue;
+            Copy copy = batch.copies.get(Chunk.key(batch.updates[i], batch.updates[i + 2]));
+            if (copy == null || !copy.current) continue;
+            copy.live.setLightPending(false);
+            if (batch.complete) lightReplaced(copy.live);
+        }
+        for (Copy copy : batch.copies.values()) {
+            copy.release();
+            if (spare.size() < MAX_SPARE_COPIES) spare.add(copy);
+        }
+        batch.copies.clear();
+    }
+
+    /** Reports every layer of a newly lit chunk, and of its neighbors whose faces look into it, as relit. */
+    private void lightReplaced(Chunk chunk) {
+        for (int side = 0; side < 5; side++) {
+            int dx = side == 1 ? 1 : side == 2 ? -1 : 0;
+            int dz = side == 3 ? 1 : side == 4 ? -1 : 0;
+            Chunk relit = side == 0 ? chunk : source.getChunk(chunk.getChunkX() + dx, chunk.getChunkZ() + dz);
+            if (relit == null) continue;
+            for (int y = 0; y < Chunk.HEIGHT; y++) {
+                listener.lightChanged(relit, y);
+            }
+        }
+    }
+
+    public interface Scheduler {
+        /** Runs {@code task} on another thread, then {@code done} back on the main thread, even if it failed. */
+        void submit(Runnable task, Runnable done);
+    }
+
+    /** The updates of one batch and the copies they work on; only the worker touches it while it runs. */
+    private final class Batch implements Runnable {
+        final Map<Long, Copy> copies = new HashMap<>();
+        final LightEngine engine = new LightEngine(this::shadowAt, this::lightChanged);
+        final int[] updates = new int[UPDATE_INTS * MAX_UPDATES_PER_BATCH];
+        final Runnable finish = LightUpdater.this::finish;
+        int updateInts;
+        boolean complete;
+        // Copy of the shadow chunk last reported relit; most reports in a row are for the same chunk.
+        private Chunk lastShadow;
+        private Copy lastCopy;
+
+        @Override
+        public void run() {
+            complete = false;
+            for (Copy copy : copies.values()) {
+                copy.prepare();
+            }
+            for (int i = 0; i < updateInts; i += UPDATE_INTS) {
+                int x = updates[i];
+                int y = updates[i + 1];
+                int z = updates[i + 2];
+                if (y == LIGHT) {
+                    Copy copy = copies.get(Chunk.key(x, z));
+                    if (copy == null) continue;
+                    LightEngine.lightChunk(copy.shadow);
+                    engine.stitch(copy.shadow);
+                    continue;
+                }
+                Copy copy = copies.get(Chunk.key(x >> 4, z >> 4));
+                if (copy == null) continue;
+                copy.shadow.setBlock(x & (Chunk.SIZE - 1), y, z & (Chunk.SIZE - 1), Block.byId(updates[i + 4]));
+                engine.blockChanged(x, y, z);
+            }
+            lastShadow = null;
+            lastCopy = null;
+            complete = true;
+        }
+
+        private Chunk shadowAt(int chunkX, int chunkZ) {
+            Copy copy = copies.get(Chunk.key(chunkX, chunkZ));
+            return copy != null ? copy.shadow : null;
+        }
+
+        private void lightChanged(Chunk shadow, int y) {
+            if (shadow != lastShadow) {
+                lastShadow = shadow;
+                lastCopy = copies.get(Chunk.key(shadow.getChunkX(), shadow.getChunkZ()));
+            }
+            lastCopy.changedLayers[y >> 6] |= 1L << y;
+        }
+    }
+
+    /** One chunk as a batch found it, and the detached chunk the worker relights in its place. */
+    private static final class Copy {
+        // Blocks and light as captured, kept in a chunk of their own whose coordinates mean nothing.
+        final Chunk blocks = new Chunk(0, 0);
+        // One bit per layer whose light changed.
+        final long[] changedLayers = new long[Chunk.HEIGHT / 64];
+        Chunk live;
+        // The live light array at capture, null if unlit; light that is dropped or replaced makes this copy stale.
+        byte[] liveSky;
+        Chunk shadow;
+        boolean current;
+
+        Copy() {
+            blocks.initLight();
+        }
+
+        void capture(Chunk chunk) {
+            live = chunk;
+            liveSky = chunk.getSkyLightArray();
+            chunk.copyBlocksTo(blocks);
+            if (liveSky != null) copyLight(chunk, blocks);
+        }
+
+        /** Builds the detached chunk; runs on the worker. */
+        void prepare() {
+            shadow = new Chunk(live.getChunkX(), live.getChunkZ());
+            blocks.copyBlocksTo(shadow);
+            if (liveSky != null) {
+                shadow.initLight();
+                copyLight(blocks, shadow);
+            }
+            Arrays.fill(changedLayers, 0L);
+        }
+
+        void apply(LightEngine.Listener listener) {
+            if (!shadow.hasLight()) return;
+            if (!live.hasLight()) live.initLight();
+            copyLight(shadow, live);
+            for (int y = 0; y < Chunk.HEIGHT; y++) {
+                if ((changedLayers[y >> 6] & 1L << y) != 0) listener.lightChanged(live, y);
+            }
+        }
+
+        void release() {
+            live = null;
+            liveSky = null;
+            shadow = null;
+            current = false;
+        }
+
+        private static void copyLight(Chunk from, Chunk to) {
+            byte[] sky = from.getSkyLightArray();
+            byte[] block = from.getBlockLightArray();
+            System.arraycopy(sky, 0, to.getSkyLightArray(), 0, sky.length);
+            System.arraycopy(block, 0, to.getBlockLightArray(), 0, block.length);
+        }
+    }
+}
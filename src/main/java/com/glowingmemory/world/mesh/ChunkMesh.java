@@ -1,25 +1,21 @@
 package com.glowingmemory.world.mesh;
 
-import org.lwjgl.opengl.GL15;
-import org.lwjgl.opengl.GL20;
-import org.lwjgl.opengl.GL30;
-
+/** A section mesh's range of vertices inside the shared {@link VertexArena}. */
 public class ChunkMesh {
-    private final int vao;
-    private final int vbo;
+    private final VertexArena arena;
+    private final int firstVertex;
     private final int vertexCount;
 
-    public ChunkMesh(int vao, int vbo, int vertexCount) {
-        this.vao = vao;
-        this.vbo = vbo;
+    public ChunkMesh(VertexArena arena, int firstVertex, int vertexCount) {
+        this.arena = arena;
+        this.firstVertex = firstVertex;
         this.vertexCount = vertexCount;
     }
 
-    public int getVao() { return vao; }
+    public int getFirstVertex() { return firstVertex; }
     public int getVertexCount() { return vertexCount; }
 
     public void destroy() {
-        GL15.glDeleteBuffers(vbo);
-        GL30.glDeleteVertexArrays(vao);
+        arena.free(firstVertex, vertexCount);
     }
 }
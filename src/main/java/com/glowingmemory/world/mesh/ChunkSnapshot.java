@@ -0,0 +1,101 @@
+package com.glowingmemory.world.mesh;
+
+import com.glowingmemory.world.Chunk;
+
+import java.util.Arrays;
+
+/**
+ * Everything the mesher reads about one chunk, copied on the main thread so the mesh can be built on any
+ * thread while the live chunk keeps changing. Block ids, and at full detail packed light, sit in arrays
+ * padded by one cell on every side: the border columns come from the four neighbors (air and open sky where
+ * none is loaded), the layer below the world is unlit air and the one above it is open sky. The neighbor of
+ * any cell is then a fixed offset away. Only the layers up to the tallest column are copied; everything
+ * above it is air. The arrays are allocated once and reused by every capture, so a mesh build in steady
+ * state allocates no snapshot memory.
+ */
+public final class ChunkSnapshot {
+    static final int WIDTH = Chunk.SIZE + 2;
+    static final int LAYER = WIDTH * WIDTH;
+    static final int VOLUME = LAYER * (Chunk.HEIGHT + 2);
+
+    final byte[] ids = new byte[VOLUME];
+    /** Packed light per cell, or null for down-sampled meshes, which are lit as open sky. */
+    byte[] light;
+    int lod;
+    int maxHeight;
+    final int[] nonAirCounts = new int[Chunk.SECTION_COUNT];
+    final int[] uniformIds = new int[Chunk.SECTION_COUNT];
+    private final byte[] lightBuffer = new byte[VOLUME];
+    // Layers holding ids from the last capture; they are cleared before the next one.
+    private int filledHeight;
+
+    /** An empty snapshot whose buffers are reused by every {@link #capture}. */
+    public ChunkSnapshot() {
+        Arrays.fill(lightBuffer, index(-1, Chunk.HEIGHT, -1), VOLUME, (byte) VertexFormat.FULL_SKY);
+    }
+
+    /**
+     * Copies {@code chunk} and the facing columns of its neighbors (+X, -X, +Z, -Z; any may be null) over
+     * whatever this snapshot held before, and returns it. At {@code lod} above 0 neighbors are left out, so
+     * every border face becomes a skirt.
+     */
+    public ChunkSnapshot capture(Chunk chunk, int lod, Chunk east, Chunk west, Chunk south, Chunk north) {
+        int maxHeight = chunk.getMaxHeight();
+        // Light is also read one layer up, by the top faces of the tallest column.
+        int lightLayers = Math.min(Chunk.HEIGHT, maxHeight + 1);
+        Arrays.fill(ids, index(-1, 0, -1), index(-1, filledHeight, -1), (byte) 0);
+        chunk.copyBlockIds(ids, index(0, 0, 0), WIDTH, LAYER, maxHeight);
+        light = null;
+        if (lod == 0) {
+            light = lightBuffer;
+            chunk.copyPackedLight(light, index(0, 0, 0), WIDTH, LAYER, lightLayers);
+            copyColumn(east, ids, light, Chunk.SIZE, 0, maxHeight);
+            copyColumn(west, ids, light, -1, Chunk.SIZE - 1, maxHeight);
+            copyRow(south, ids, light, Chunk.SIZE, 0, maxHeight);
+            copyRow(north, ids, light, -1, Chunk.SIZE - 1, maxHeight);
+        }
+        this.lod = lod;
+        this.maxHeight = maxHeight;
+        filledHeight = maxHeight;
+        for (int section = 0; section < Chunk.SECTION_COUNT; section++) {
+            nonAirCounts[section] = chunk.getNonAirCount(section);
+            uniformIds[section] = chunk.getSectionUniformId(section);
+        }
+        return this;
+    }
+
+    /** Fills the padding column at {@code x} from column {@code sourceX} of {@code neighbor}. */
+    private static void copyColumn(Chunk neighbor, byte[] ids, byte[] light, int x, int sourceX, int height) {
+        for (int y = 0; y < height; y++) {
+            for (int z = 0; z < Chunk.SIZE; z++) {
+                int i = index(x, y, z);
+                if (neighbor == null) {
+                    light[i] = (byte) VertexFormat.FULL_SKY;
+                    continue;
+                }
+                ids[i] = (byte) neighbor.getBlockId(sourceX, y, z);
+                light[i] = (byte) neighbor.getPackedLight(sourceX, y, z);
+            }
+        }
+    }
+
+    /** Fills the padding row at {@code z} from row {@code sourceZ} of {@code neighbor}. */
+    private static void copyRow(Chunk neighbor, byte[] ids, byte[] light, int z, int sourceZ, int height) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < Chunk.SIZE; x++) {
+                int i = index(x, y, z);
+                if (neighbor == null) {
+                    light[i] = (byte) VertexFormat.FULL_SKY;
+                    continue;
+                }
+                ids[i] = (byte) neighbor.getBlockId(x, y, sourceZ);
+                light[i] = (byte) neighbor.getPackedLight(x, y, sourceZ);
+            }
+        }
+    }
+
+    /** Position of chunk-local cell x, y, z (each may be one outside the chunk) in the padded arrays. */
+    static int index(int x, int y, int z) {
+        return ((y + 1) * WIDTH + z + 1) * WIDTH + x + 1;
+    }
+}
@@ -0,0 +1,67 @@
+package com.glowingmemory.world.mesh;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * First-fit range allocator over {@code [0, capacity)}. Free ranges are kept sorted by start and merged
+ * with their neighbors when released, so the arena does not fragment into slivers as meshes churn.
+ */
+public class FreeListAllocator {
+    private final TreeMap<Integer, Integer> free = new TreeMap<>();
+    private int capacity;
+    private int used;
+
+    public FreeListAllocator(int capacity) {
+        this.capacity = capacity;
+        if (capacity > 0) free.put(0, capacity);
+    }
+
+    /** Returns the start of a free range of {@code size} units, or -1 if none is large enough. */
+    public int allocate(int size) {
+        Iterator<Map.Entry<Integer, Integer>> it = free.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Integer> range = it.next();
+            int start = range.getKey();
+            int length = range.getValue();
+            if (length < size) continue;
+            it.remove();
+            if (length > size) free.put(start + size, length - size);
+            used += size;
+            return start;
+        }
+        return -1;
+    }
+
+    public void free(int start, int size) {
+        used -= size;
+        Map.Entry<Integer, Integer> before = free.floorEntry(start);
+        if (before != null && before.getKey() + before.getValue() == start) {
+            start = before.getKey();
+            size += before.getValue();
+        }
+        Integer after = free.get(start + size);
+        if (after != null) {
+            free.remove(start + size);
+            size += after;
+        }
+        free.put(start, size);
+    }
+
+    /** Extends the range to {@code newCapacity}; the added space joins a free range ending at the old end. */
+    public void grow(int newCapacity) {
+        if (newCapacity <= capacity) return;
+        int added = newCapacity - capacity;
+        int start = capacity;
+        capacity = newCapacity;
+        used += added;
+        free(start, added);
+    }
+
+    public int getCapacity() { return capacity; }
+
+    public int getUsed() { return used; }
+
+    public int getFreeRangeCount() { return free.size(); }
+}
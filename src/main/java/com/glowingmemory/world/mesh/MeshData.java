@@ -0,0 +1,18 @@
+package com.glowingmemory.world.mesh;
+
+public class MeshData {
+    public static final MeshData EMPTY = new MeshData(new int[0], 0);
+
+    private final int[] vertices;
+    private final int vertexCount;
+
+    public MeshData(int[] vertices, int vertexCount) {
+        this.vertices = vertices;
+        this.vertexCount = vertexCount;
+    }
+
+    public int[] getVertices() { return vertices; }
+    public int getVertexCount() { return vertexCount; }
+    public int getByteSize() { return vertexCount * VertexFormat.BYTES_PER_VERTEX; }
+    public boolean isEmpty() { return vertexCount == 0; }
+}
@@ -0,0 +1,10 @@
+package com.glowingmemory.world.mesh;
+
+public final class MeshUploader {
+    private MeshUploader() {}
+
+    public static ChunkMesh upload(VertexArena arena, MeshData data) {
+        if (data == null || data.isEmpty()) return null;
+        return arena.upload(data);
+    }
+}
@@ -1,27 +1,23 @@
 package com.glowingmemory.world.mesh;
 
 import com.glowingmemory.world.Block;
+import com.glowingmemory.world.BlockStorage;
 import com.glowingmemory.world.Chunk;
-import org.joml.Vector3f;
-import org.lwjgl.opengl.GL11;
-import org.lwjgl.opengl.GL15;
-import org.lwjgl.opengl.GL20;
-import org.lwjgl.opengl.GL30;
-import org.lwjgl.system.MemoryUtil;
 
-import java.nio.FloatBuffer;
+import java.util.Arrays;
 
 public class Mesher {
-    private static final int[] FACE_OFFSETS = {
-            1, 0, 0,
-            -1, 0, 0,
-            0, 1, 0,
-            0, -1, 0,
-            0, 0, 1,
-            0, 0, -1
+    public enum Mode { NAIVE, GREEDY }
+
+    // Distance to the neighbor across each face in the padded arrays of a ChunkSnapshot.
+    private static final int[] FACE_STRIDES = {
+            1, -1, ChunkSnapshot.LAYER, -ChunkSnapshot.LAYER, ChunkSnapshot.WIDTH, -ChunkSnapshot.WIDTH
     };
 
-    private static final float[][] FACE_VERTS = {
+    // Distance between neighboring cells along x, y and z in the same arrays.
+    private static final int[] AXIS_STRIDES = {1, ChunkSnapshot.LAYER, ChunkSnapshot.WIDTH};
+
+    private static final int[][] FACE_VERTS = {
             {1,0,0, 1,1,0, 1,1,1, 1,0,1}, // +X
             {0,0,1, 0,1,1, 0,1,0, 0,0,0}, // -X
             {0,1,1, 1,1,1, 1,1,0, 0,1,0}, // +Y
@@ -30,30 +26,120 @@ public class Mesher {
             {0,1,0, 1,1,0, 1,0,0, 0,0,0}  // -Z
     };
 
-    private static final float[][] FACE_NORMALS = {
-            {1, 0, 0},  // +X
-            {-1, 0, 0}, // -X
-            {0, 1, 0},  // +Y
-            {0, -1, 0}, // -Y
-            {0, 0, 1},  // +Z
-            {0, 0, -1}  // -Z
-    };
-
     private static final int[] INDICES = {0,1,2, 2,3,0};
+    private static final int S = BlockStorage.SIZE;
+
+    public static final int MAX_LOD = 3;
+
+    private static final int AIR = Block.AIR.ordinal();
+    private static final int WATER = Block.WATER.ordinal();
+
+    private static final ThreadLocal<GreedyScratch> GREEDY_SCRATCH = ThreadLocal.withInitial(GreedyScratch::new);
+    private static final ThreadLocal<byte[]> DOWNSAMPLED = ThreadLocal.withInitial(() -> new byte[ChunkSnapshot.VOLUME]);
+    private static final ThreadLocal<int[]> BLOCK_COUNTS = ThreadLocal.withInitial(() -> new int[Block.count()]);
+
+    /**
+     * Builds meshes for the sections set in {@code sectionMask} into {@code meshes}; other entries are set to
+     * null. Sections without any non-air block get {@link MeshData#EMPTY} without being scanned. The face
+     * connectivity of each rebuilt section goes to the same index of {@code visibility}. Reads nothing but the
+     * snapshot, so it may run on any thread.
+     * <p>
+     * At lod 1 to 3 the chunk is first down-sampled into 2, 4 or 8 block wide cubes (see {@link #downsample}).
+     * Neighbor chunks are then treated as air, so every border face is emitted: these walls sit inside the
+     * terrain and act as skirts that hide cracks next to chunks of another level. Down-sampled meshes are lit
+     * as open sky; full-resolution faces carry the light of the cell they face.
+     */
+    public static void buildSectionMeshes(ChunkSnapshot snapshot, Mode mode, int sectionMask, MeshData[] meshes,
+                                          int[] visibility) {
+        Arrays.fill(meshes, null);
+        byte[] meshIds = null;
+        // Nothing is above the tallest column (down-sampled cubes may round it up to their size).
+        int factor = 1 << snapshot.lod;
+        int top = (snapshot.maxHeight + factor - 1) / factor * factor;
+        for (int section = 0; section < Chunk.SECTION_COUNT; section++) {
+            if ((sectionMask & (1 << section)) == 0) continue;
+            if (snapshot.nonAirCounts[section] == 0) {
+                visibility[section] = SectionVisibility.ALL;
+                meshes[section] = MeshData.EMPTY;
+                continue;
+            }
+            if (meshIds == null) {
+                meshIds = snapshot.lod > 0 ? downsample(snapshot.ids, factor, DOWNSAMPLED.get()) : snapshot.ids;
+            }
+            int y0 = section * S;
+            int uniform = snapshot.uniformIds[section];
+            visibility[section] = uniform >= 0 ? SectionVisibility.ofUniform(uniform)
+                    : SectionVisibility.compute(snapshot.ids, ChunkSnapshot.index(0, y0, 0), ChunkSnapshot.WIDTH, ChunkSnapshot.LAYER);
+            int height = Math.min(S, top - y0);
+            if (height <= 0) {
+                meshes[section] = MeshData.EMPTY;
+                continue;
+            }
+            meshes[section] = mode == Mode.GREEDY
+                    ? buildGreedy(meshIds, snapshot.light, y0, height)
+                    : buildNaive(meshIds, snapshot.light, y0, height);
+        }
+    }
+
+    /**
+     * Replaces every {@code factor}-sized cube with a single block type. A cube becomes solid when at least
+     * half of its cells hold full-height blocks; it then takes the most common block of its highest occupied
+     * layer, so grass-topped hills stay green from a distance. Cubes never straddle sections. Works on padded
+     * snapshot ids and overwrites all of {@code out}; the padding of the result is air.
+     */
+    static byte[] downsample(byte[] ids, int factor, byte[] out) {
+        Arrays.fill(out, (byte) 0);
+        int[] counts = BLOCK_COUNTS.get();
+        int volume = factor * factor * factor;
+        for (int by = 0; by < Chunk.HEIGHT; by += factor) {
+            for (int bz = 0; bz < Chunk.SIZE; bz += factor) {
+                for (int bx = 0; bx < Chunk.SIZE; bx += factor) {
+                    int solid = 0;
+                    int top = -1;
+                    for (int y = by + factor - 1; y >= by; y--) {
+                        for (int z = bz; z < bz + factor; z++) {
+                            for (int x = bx; x < bx + factor; x++) {
+                                if (!isFullBlock(ids[ChunkSnapshot.index(x, y, z)])) continue;
+                                solid++;
+                                if (top < 0) top = y;
+                            }
+                        }
+                    }
+                    if (solid * 2 < volume) continue;
+                    Arrays.fill(counts, 0);
+                    int best = 0;
+                    for (int z = bz; z < bz + factor; z++) {
+                        for (int x = bx; x < bx + factor; x++) {
+                            byte id = ids[ChunkSnapshot.index(x, top, z)];
+                            if (isFullBlock(id) && ++counts[id] > counts[best]) best = id;
+                        }
+                    }
+                    for (int y = by; y < by + factor; y++) {
+                        for (int z = bz; z < bz + factor; z++) {
+                            int row = ChunkSnapshot.index(0, y, z);
+                            Arrays.fill(out, row + bx, row + bx + factor, (byte) best);
+                        }
+                    }
+                }
+            }
+        }
+        return out;
+    }
 
-    public static ChunkMesh buildMesh(Chunk chunk, NeighborLookup lookup) {
+    private static boolean isFullBlock(byte id) {
+        return id != 0 && Block.byId(id).renderHeight >= 1f;
+    }
+
+    private static MeshData buildNaive(byte[] ids, byte[] light, int y0, int height) {
         int visibleFaces = 0;
         for (int x = 0; x < Chunk.SIZE; x++) {
-            for (int y = 0; y < Chunk.HEIGHT; y++) {
+            for (int y = y0; y < y0 + height; y++) {
                 for (int z = 0; z < Chunk.SIZE; z++) {
-                    Block block = chunk.getBlock(x, y, z);
-                    if (block == Block.AIR) continue;
+                    int i = ChunkSnapshot.index(x, y, z);
+                    int id = ids[i];
+                    if (id == AIR) continue;
                     for (int face = 0; face < 6; face++) {
-                        int ox = x + FACE_OFFSETS[face * 3];
-                        int oy = y + FACE_OFFSETS[face * 3 + 1];
-                        int oz = z + FACE_OFFSETS[face * 3 + 2];
-                        Block neighbor = lookup.getBlock(ox, oy, oz);
-                        if (neighbor == Block.AIR || (neighbor == Block.WATER && block != Block.WATER)) {
+                        if (isFaceVisible(id, ids[i + FACE_STRIDES[face]])) {
                             visibleFaces++;
                         }
                     }
@@ -61,66 +147,169 @@ public class Mesher {
             }
         }
 
-        if (visibleFaces == 0) return null;
-
-        FloatBuffer buffer = MemoryUtil.memAllocFloat(visibleFaces * INDICES.length * 9);
-        int vertexCount = 0;
+        if (visibleFaces == 0) return MeshData.EMPTY;
+        int[] buffer = new int[visibleFaces * INDICES.length * VertexFormat.INTS_PER_VERTEX];
+        int offset = 0;
         for (int x = 0; x < Chunk.SIZE; x++) {
-            for (int y = 0; y < Chunk.HEIGHT; y++) {
+            for (int y = y0; y < y0 + height; y++) {
                 for (int z = 0; z < Chunk.SIZE; z++) {
-                    Block block = chunk.getBlock(x, y, z);
-                    if (block == Block.AIR) continue;
+                    int i = ChunkSnapshot.index(x, y, z);
+                    int id = ids[i];
+                    if (id == AIR) continue;
+                    Block block = Block.byId(id);
                     for (int face = 0; face < 6; face++) {
-                        int ox = x + FACE_OFFSETS[face * 3];
-                        int oy = y + FACE_OFFSETS[face * 3 + 1];
-                        int oz = z + FACE_OFFSETS[face * 3 + 2];
-                        Block neighbor = lookup.getBlock(ox, oy, oz);
-                        if (neighbor == Block.AIR || (neighbor == Block.WATER && block != Block.WATER)) {
-                            Vector3f color = block.color;
-                            float[] verts = FACE_VERTS[face];
-                            float[] normal = FACE_NORMALS[face];
-                            float height = block.renderHeight;
-                            for (int i = 0; i < INDICES.length; i++) {
-                                int idx = INDICES[i] * 3;
-                                buffer.put(x + verts[idx]);
-                                buffer.put(y + verts[idx + 1] * height);
-                                buffer.put(z + verts[idx + 2]);
-                                buffer.put(normal[0]);
-                                buffer.put(normal[1]);
-                                buffer.put(normal[2]);
-                                buffer.put(color.x);
-                                buffer.put(color.y);
-                                buffer.put(color.z);
+                        if (isFaceVisible(id, ids[i + FACE_STRIDES[face]])) {
+                            offset = writeQuad(buffer, offset, face, block, faceLight(light, block, i, face),
+                                    x, y, z, 1, 1, 1);
+                        }
+                    }
+                }
+            }
+        }
+        return new MeshData(buffer, offset / VertexFormat.INTS_PER_VERTEX);
+    }
+
+    /**
+     * Merges coplanar visible faces of the same block and light into maximal rectangles, one slice at a time.
+     * Blocks with a partial render height (tall grass) never merge and are emitted face by face.
+     * <p>
+     * One pass over the cells, like the naive mesher's, marks every visible face as a bit in a row of its
+     * slice; merging then only looks at set bits and clears each one it covers, so the rows are all zero again
+     * for the next section.
+     */
+    private static MeshData buildGreedy(byte[] ids, byte[] light, int y0, int height) {
+        GreedyScratch scratch = GREEDY_SCRATCH.get();
+        int[] buffer = scratch.buffer;
+        int[] rows = scratch.rows;
+        int offset = 0;
+        int origin = ChunkSnapshot.index(0, y0, 0);
+        for (int ly = 0; ly < height; ly++) {
+            for (int z = 0; z < S; z++) {
+                int cell = origin + ly * ChunkSnapshot.LAYER + z * ChunkSnapshot.WIDTH;
+                for (int x = 0; x < S; x++, cell++) {
+                    int id = ids[cell];
+                    if (id == AIR) continue;
+                    Block block = null;
+                    for (int face = 0; face < 6; face++) {
+                        if (!isFaceVisible(id, ids[cell + FACE_STRIDES[face]])) continue;
+                        if (block == null) block = Block.byId(id);
+                        if (block.renderHeight < 1f) {
+                            buffer = ensureCapacity(buffer, offset);
+                            offset = writeQuad(buffer, offset, face, block, faceLight(light, block, cell, face),
+                                    x, y0 + ly, z, 1, 1, 1);
+                            continue;
+                        }
+                        // Row j of slice d holds bit i, with d, i and j along n, u and v of the face.
+                        int n = face / 2;
+                        int slice = n == 0 ? x : n == 1 ? ly : z;
+                        int j = n == 0 ? z : n == 1 ? x : ly;
+                        int i = n == 0 ? ly : n == 1 ? z : x;
+                        rows[(face * S + slice) * S + j] |= 1 << i;
+                    }
+                }
+            }
+        }
+
+        for (int face = 0; face < 6; face++) {
+            int n = face / 2;
+            int u = (n + 1) % 3;
+            int v = (n + 2) % 3;
+            int strideN = AXIS_STRIDES[n];
+            int strideU = AXIS_STRIDES[u];
+            int strideV = AXIS_STRIDES[v];
+            int baseN = n == 1 ? y0 : 0;
+            int baseU = u == 1 ? y0 : 0;
+            int baseV = v == 1 ? y0 : 0;
+            int neighbor = FACE_STRIDES[face];
+            for (int d = 0; d < S; d++) {
+                int slice = (face * S + d) * S;
+                for (int j = 0; j < S; j++) {
+                    int bits = rows[slice + j];
+                    while (bits != 0) {
+                        int i = Integer.numberOfTrailingZeros(bits);
+                        int cell = origin + d * strideN + i * strideU + j * strideV;
+                        int entry = faceEntry(ids, light, cell, neighbor);
+                        int w = 1;
+                        while ((bits & 1 << i + w) != 0 && faceEntry(ids, light, cell + w * strideU, neighbor) == entry) {
+                            w++;
+                        }
+                        int span = (1 << w) - 1 << i;
+                        int h = 1;
+                        grow:
+                        while (j + h < S) {
+                            int next = rows[slice + j + h];
+                            if ((next & span) != span) break;
+                            int start = cell + h * strideV;
+                            for (int k = 0; k < w; k++) {
+                                if (faceEntry(ids, light, start + k * strideU, neighbor) != entry) break grow;
                             }
-                            vertexCount += 6;
+                            rows[slice + j + h] = next & ~span;
+                            h++;
                         }
+                        bits &= ~span;
+                        buffer = ensureCapacity(buffer, offset);
+                        offset = writeQuad(buffer, offset, face, Block.byId(entry & 255), entry >>> 8,
+                                onAxis(0, n, u, baseN + d, baseU + i, baseV + j),
+                                onAxis(1, n, u, baseN + d, baseU + i, baseV + j),
+                                onAxis(2, n, u, baseN + d, baseU + i, baseV + j),
+                                onAxis(0, n, u, 1, w, h), onAxis(1, n, u, 1, w, h), onAxis(2, n, u, 1, w, h));
                     }
+                    rows[slice + j] = 0;
                 }
             }
         }
-        buffer.flip();
-        if (vertexCount == 0) {
-            MemoryUtil.memFree(buffer);
-            return null;
+        // Keep a grown buffer for the next section built on this thread.
+        scratch.buffer = buffer;
+        if (offset == 0) return MeshData.EMPTY;
+        return new MeshData(Arrays.copyOf(buffer, offset), offset / VertexFormat.INTS_PER_VERTEX);
+    }
+
+    /** Block id in the low byte and the light the face looks into in the next one; only for full blocks. */
+    private static int faceEntry(byte[] ids, byte[] light, int cell, int neighbor) {
+        int faceLight = light == null ? VertexFormat.FULL_SKY : light[cell + neighbor] & 0xFF;
+        return ids[cell] | faceLight << 8;
+    }
+
+    /** Picks the value given for {@code axis}, where the three values are along n, u and the remaining axis. */
+    private static int onAxis(int axis, int n, int u, int alongN, int alongU, int alongV) {
+        return axis == n ? alongN : axis == u ? alongU : alongV;
+    }
+
+    /**
+     * Light of the cell a face looks into, or of the block's own cell for partial blocks, which have no
+     * neighbor of their own to face. Without light (down-sampled meshes) everything is open sky.
+     */
+    private static int faceLight(byte[] light, Block block, int cell, int face) {
+        if (light == null) return VertexFormat.FULL_SKY;
+        return light[block.renderHeight >= 1f ? cell + FACE_STRIDES[face] : cell] & 0xFF;
+    }
+
+    private static boolean isFaceVisible(int id, int neighborId) {
+        return neighborId == AIR || (neighborId == WATER && id != WATER);
+    }
+
+    private static int[] ensureCapacity(int[] buffer, int offset) {
+        int needed = INDICES.length * VertexFormat.INTS_PER_VERTEX;
+        if (offset + needed <= buffer.length) return buffer;
+        return Arrays.copyOf(buffer, Math.max(buffer.length * 2, offset + needed));
+    }
+
+    private static int writeQuad(int[] buffer, int offset, int face, Block block, int light, int x, int y, int z,
+                                 int sx, int sy, int sz) {
+        int[] verts = FACE_VERTS[face];
+        int blockId = block.ordinal();
+        for (int i = 0; i < INDICES.length; i++) {
+            int idx = INDICES[i] * 3;
+            buffer[offset++] = VertexFormat.pack(x + verts[idx] * sx, y + verts[idx + 1] * sy, z + verts[idx + 2] * sz,
+                    face, verts[idx + 1] == 1, blockId);
+            buffer[offset++] = light;
         }
-        int vao = GL30.glGenVertexArrays();
-        int vbo = GL15.glGenBuffers();
-        GL30.glBindVertexArray(vao);
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vbo);
-        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, buffer, GL15.GL_STATIC_DRAW);
-        GL20.glVertexAttribPointer(0, 3, GL11.GL_FLOAT, false, 9 * Float.BYTES, 0);
-        GL20.glVertexAttribPointer(1, 3, GL11.GL_FLOAT, false, 9 * Float.BYTES, 3 * Float.BYTES);
-        GL20.glVertexAttribPointer(2, 3, GL11.GL_FLOAT, false, 9 * Float.BYTES, 6 * Float.BYTES);
-        GL20.glEnableVertexAttribArray(0);
-        GL20.glEnableVertexAttribArray(1);
-        GL20.glEnableVertexAttribArray(2);
-        GL30.glBindVertexArray(0);
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
-        MemoryUtil.memFree(buffer);
-        return new ChunkMesh(vao, vbo, vertexCount);
+        return offset;
     }
 
-    public interface NeighborLookup {
-        Block getBlock(int x, int y, int z);
+    /** Per-thread buffers of {@link #buildGreedy}: face bits per slice row, and vertices before they are copied out. */
+    private static final class GreedyScratch {
+        final int[] rows = new int[6 * S * S];
+        int[] buffer = new int[2048];
     }
 }
@@ -0,0 +1,123 @@
+package com.glowingmemory.world.mesh;
+
+import com.glowingmemory.world.Block;
+import com.glowingmemory.world.BlockStorage;
+
+import java.util.Arrays;
+
+/**
+ * Which pairs of a section's six faces are connected through see-through cells. The result packs one bit
+ * per unordered face pair (15 bits) and lets the renderer skip sections that no line of sight can reach.
+ * Faces use the mesher's order: +X, -X, +Y, -Y, +Z, -Z.
+ */
+public final class SectionVisibility {
+    public static final int NONE = 0;
+    public static final int ALL = (1 << 15) - 1;
+
+    private static final int S = BlockStorage.SIZE;
+    private static final int[] PAIR_BITS = new int[36];
+    private static final boolean[] SEE_THROUGH = new boolean[256];
+    private static final ThreadLocal<int[]> QUEUE = ThreadLocal.withInitial(() -> new int[BlockStorage.VOLUME]);
+    private static final ThreadLocal<byte[]> SECTION = ThreadLocal.withInitial(() -> new byte[BlockStorage.VOLUME]);
+    private static final ThreadLocal<boolean[]> VISITED = ThreadLocal.withInitial(() -> new boolean[BlockStorage.VOLUME]);
+
+    static {
+        int bit = 0;
+        for (int a = 0; a < 6; a++) {
+            for (int b = a + 1; b < 6; b++) {
+                PAIR_BITS[a * 6 + b] = 1 << bit;
+                PAIR_BITS[b * 6 + a] = 1 << bit;
+                bit++;
+            }
+        }
+        for (int id = 0; id < Block.count(); id++) {
+            Block block = Block.byId(id);
+            SEE_THROUGH[id] = block == Block.AIR || block == Block.WATER || block.renderHeight < 1f;
+        }
+    }
+
+    private SectionVisibility() {}
+
+    public static boolean connects(int visibility, int faceA, int faceB) {
+        return faceA == faceB || (visibility & PAIR_BITS[faceA * 6 + faceB]) != 0;
+    }
+
+    public static int ofUniform(int id) {
+        return SEE_THROUGH[id] ? ALL : NONE;
+    }
+
+    /**
+     * Flood fills the see-through cells of the section whose cells start at {@code offset} in {@code ids}
+     * (y, z, x order) and connects every pair of faces touched by the same region.
+     */
+    public static int compute(byte[] ids, int offset) {
+        int[] queue = QUEUE.get();
+        boolean[] visited = VISITED.get();
+        Arrays.fill(visited, false);
+        int visibility = NONE;
+        for (int start = 0; start < BlockStorage.VOLUME; start++) {
+            if (visited[start] || !SEE_THROUGH[ids[offset + start] & 0xFF]) continue;
+            visited[start] = true;
+            queue[0] = start;
+            int head = 0;
+            int tail = 1;
+            int faces = 0;
+            while (head < tail) {
+                int i = queue[head++];
+                int x = i & (S - 1);
+                int z = (i >> 4) & (S - 1);
+                int y = i >> 8;
+                faces |= touchedFaces(x, y, z);
+                if (x < S - 1) tail = visit(ids, offset, visited, queue, tail, i + 1);
+                if (x > 0) tail = visit(ids, offset, visited, queue, tail, i - 1);
+                if (z < S - 1) tail = visit(ids, offset, visited, queue, tail, i + S);
+                if (z > 0) tail = visit(ids, offset, visited, queue, tail, i - S);
+                if (y < S - 1) tail = visit(ids, offset, visited, queue, tail, i + S * S);
+                if (y > 0) tail = visit(ids, offset, visited, queue, tail, i - S * S);
+            }
+            visibility |= connectAll(faces);
+            if (visibility == ALL) break;
+        }
+        return visibility;
+    }
+
+    /** Like {@link #compute(byte[], int)} for cells whose z rows and y layers lie {@code rowStride} and {@code layerStride} apart. */
+    public static int compute(byte[] ids, int offset, int rowStride, int layerStride) {
+        byte[] section = SECTION.get();
+        for (int y = 0; y < S; y++) {
+            for (int z = 0; z < S; z++) {
+                System.arraycopy(ids, offset + y * layerStride + z * rowStride, section, (y * S + z) * S, S);
+            }
+        }
+        return compute(section, 0);
+    }
+
+    private static int visit(byte[] ids, int offset, boolean[] visited, int[] queue, int tail, int i) {
+        if (visited[i] || !SEE_THROUGH[ids[offset + i] & 0xFF]) return tail;
+        visited[i] = true;
+        queue[tail] = i;
+        return tail + 1;
+    }
+
+    private static int touchedFaces(int x, int y, int z) {
+        int faces = 0;
+        if (x == S - 1) faces |= 1;
+        if (x == 0) faces |= 1 << 1;
+        if (y == S - 1) faces |= 1 << 2;
+        if (y == 0) faces |= 1 << 3;
+        if (z == S - 1) faces |= 1 << 4;
+        if (z == 0) faces |= 1 << 5;
+        return faces;
+    }
+
+    private static int connectAll(int faces) {
+        int visibility = 0;
+        for (int a = 0; a < 6; a++) {
+            if ((faces & (1 << a)) == 0) continue;
+            for (int b = a + 1; b < 6; b++) {
+                if ((faces & (1 << b)) != 0) visibility |= PAIR_BITS[a * 6 + b];
+            }
+        }
+        return visibility;
+    }
+}
@@ -0,0 +1,94 @@
+package com.glowingmemory.world.mesh;
+
+import com.glowingmemory.util.Log;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+
+/**
+ * One large vertex buffer shared by every chunk section mesh, carved up by a {@link FreeListAllocator}.
+ * All sections draw from a single VAO, which is what lets the renderer submit them in one batched call.
+ * When the buffer runs out it is doubled and the old contents are copied over on the GPU.
+ */
+public class VertexArena {
+    // Location 1 is the per-draw chunk offset set up by ChunkDrawBatch.
+    private static final int LIGHT_ATTRIBUTE = 2;
+
+    private final FreeListAllocator allocator;
+    private final int vao;
+    private int vbo;
+
+    public VertexArena(int initialVertices) {
+        allocator = new FreeListAllocator(initialVertices);
+        vao = GL30.glGenVertexArrays();
+        vbo = createBuffer(initialVertices);
+        bindVertexBuffer();
+    }
+
+    public ChunkMesh upload(MeshData data) {
+        int count = data.getVertexCount();
+        int first = allocator.allocate(count);
+        if (first < 0) {
+            grow(count);
+            first = allocator.allocate(count);
+        }
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vbo);
+        GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, (long) first * VertexFormat.BYTES_PER_VERTEX, data.getVertices());
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        return new ChunkMesh(this, first, count);
+    }
+
+    void free(int first, int count) {
+        allocator.free(first, count);
+    }
+
+    private void grow(int needed) {
+        int oldCapacity = allocator.getCapacity();
+        int newCapacity = Math.max(oldCapacity * 2, oldCapacity + needed);
+        int newVbo = createBuffer(newCapacity);
+        GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, vbo);
+        GL15.glBindBuffer(GL31.GL_COPY_WRITE_BUFFER, newVbo);
+        GL31.glCopyBufferSubData(GL31.GL_COPY_READ_BUFFER, GL31.GL_COPY_WRITE_BUFFER, 0, 0,
+                (long) oldCapacity * VertexFormat.BYTES_PER_VERTEX);
+        GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, 0);
+        GL15.glBindBuffer(GL31.GL_COPY_WRITE_BUFFER, 0);
+        GL15.glDeleteBuffers(vbo);
+        vbo = newVbo;
+        allocator.grow(newCapacity);
+        bindVertexBuffer();
+        Log.info("Vertex arena grown to " + newCapacity + " vertices ("
+                + (long) newCapacity * VertexFormat.BYTES_PER_VERTEX / (1024 * 1024) + " MB)");
+    }
+
+    private static int createBuffer(int vertices) {
+        int buffer = GL15.glGenBuffers();
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, buffer);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, (long) vertices * VertexFormat.BYTES_PER_VERTEX, GL15.GL_STATIC_DRAW);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        return buffer;
+    }
+
+    private void bindVertexBuffer() {
+        GL30.glBindVertexArray(vao);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vbo);
+        GL30.glVertexAttribIPointer(0, 1, GL11.GL_UNSIGNED_INT, VertexFormat.BYTES_PER_VERTEX, 0);
+        GL20.glEnableVertexAttribArray(0);
+        GL30.glVertexAttribIPointer(LIGHT_ATTRIBUTE, 1, GL11.GL_UNSIGNED_INT, VertexFormat.BYTES_PER_VERTEX, Integer.BYTES);
+        GL20.glEnableVertexAttribArray(LIGHT_ATTRIBUTE);
+        GL30.glBindVertexArray(0);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+    }
+
+    public int getVao() { return vao; }
+
+    public int getUsedVertices() { return allocator.getUsed(); }
+
+    public int getCapacityVertices() { return allocator.getCapacity(); }
+
+    public void destroy() {
+        GL15.glDeleteBuffers(vbo);
+        GL30.glDeleteVertexArrays(vao);
+    }
+}
@@ -0,0 +1,40 @@
+package com.glowingmemory.world.mesh;
+
+/**
+ * Chunk vertices are two unsigned ints, matching {@code chunk.vert}. The first holds the geometry:
+ * <pre>
+ * bits  0-4   x relative to the chunk (0..16)
+ * bits  5-12  y (0..128)
+ * bits 13-17  z relative to the chunk (0..16)
+ * bits 18-20  face index (+X, -X, +Y, -Y, +Z, -Z)
+ * bit  21     top corner, lowered by the block's render height in the shader
+ * bits 22-29  block id, looked up in the palette uniform
+ * </pre>
+ * The second holds the light of the cell the face looks into:
+ * <pre>
+ * bits  0-3   block light (0..15)
+ * bits  4-7   sky light (0..15)
+ * </pre>
+ */
+public final class VertexFormat {
+    public static final int INTS_PER_VERTEX = 2;
+    public static final int BYTES_PER_VERTEX = INTS_PER_VERTEX * Integer.BYTES;
+    /** Light word of faces with nothing but open sky around them. */
+    public static final int FULL_SKY = 0xf0;
+    public static final int PALETTE_SIZE = 32;
+
+    private VertexFormat() {}
+
+    public static int pack(int x, int y, int z, int face, boolean top, int blockId) {
+        return x | (y << 5) | (z << 13) | (face << 18) | ((top ? 1 : 0) << 21) | (blockId << 22);
+    }
+
+    public static int x(int vertex) { return vertex & 31; }
+    public static int y(int vertex) { return (vertex >>> 5) & 255; }
+    public static int z(int vertex) { return (vertex >>> 13) & 31; }
+    public static int face(int vertex) { return (vertex >>> 18) & 7; }
+    public static boolean top(int vertex) { return ((vertex >>> 21) & 1) != 0; }
+    public static int blockId(int vertex) { return (vertex >>> 22) & 255; }
+    public static int skyLight(int light) { return (light >>> 4) & 15; }
+    public static int blockLight(int light) { return light & 15; }
+}
@@ -1,12 +1,23 @@
 #version 330 core
 in vec3 vColor;
 in vec3 vNormal;
+// x = sky light, y = block light, 0..15
+in vec2 vLight;
 out vec4 FragColor;
 
+const vec3 LAMP_COLOR = vec3(1.0, 0.9, 0.75);
+
+// Each level below 15 dims by a fifth, so light falls off quickly but never quite reaches black.
+float brightness(float level) {
+    return level > 0.0 ? pow(0.8, 15.0 - level) : 0.0;
+}
+
 void main() {
     vec3 lightDir = normalize(vec3(-0.6, -1.0, -0.4));
     float diffuse = max(dot(normalize(vNormal), -lightDir), 0.0);
     float ambient = 0.35;
-    vec3 litColor = vColor * (ambient + diffuse * 0.65);
+    vec3 sun = vec3((ambient + diffuse * 0.65) * brightness(vLight.x));
+    vec3 lamp = LAMP_COLOR * brightness(vLight.y);
+    vec3 litColor = vColor * max(max(sun, lamp), vec3(0.04));
     FragColor = vec4(litColor, 1.0);
 }
@@ -1,17 +1,33 @@
 #version 330 core
-layout (location = 0) in vec3 aPos;
-layout (location = 1) in vec3 aNormal;
-layout (location = 2) in vec3 aColor;
+layout (location = 0) in uint aPacked;
+// World position of the chunk, per draw
+layout (location = 1) in vec3 aOffset;
+// Sky light in bits 4-7, block light in bits 0-3
+layout (location = 2) in uint aLight;
 
 out vec3 vColor;
 out vec3 vNormal;
+out vec2 vLight;
 
-uniform mat4 model;
 uniform mat4 view;
 uniform mat4 projection;
+// rgb = block color, a = render height
+uniform vec4 palette[32];
+
+const vec3 NORMALS[6] = vec3[6](
+    vec3(1.0, 0.0, 0.0), vec3(-1.0, 0.0, 0.0),
+    vec3(0.0, 1.0, 0.0), vec3(0.0, -1.0, 0.0),
+    vec3(0.0, 0.0, 1.0), vec3(0.0, 0.0, -1.0)
+);
 
 void main() {
-    vColor = aColor;
-    vNormal = mat3(model) * aNormal;
-    gl_Position = projection * view * model * vec4(aPos, 1.0);
+    vec3 pos = vec3(float(aPacked & 31u), float((aPacked >> 5u) & 255u), float((aPacked >> 13u) & 31u));
+    uint face = (aPacked >> 18u) & 7u;
+    float top = float((aPacked >> 21u) & 1u);
+    vec4 block = palette[(aPacked >> 22u) & 255u];
+    pos.y -= top * (1.0 - block.a);
+    vColor = block.rgb;
+    vNormal = NORMALS[face];
+    vLight = vec2(float((aLight >> 4u) & 15u), float(aLight & 15u));
+    gl_Position = projection * view * vec4(pos + aOffset, 1.0);
 }
@@ -1,4 +1,9 @@
 #version 330 core
+in vec2 vUv;
 uniform vec3 color;
+uniform sampler2D atlas;
 out vec4 FragColor;
-void main() { FragColor = vec4(color, 1.0); }
+void main() {
+    if (texture(atlas, vUv).r < 0.5) discard;
+    FragColor = vec4(color, 1.0);
+}